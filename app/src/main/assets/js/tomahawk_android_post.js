@@ -32,8 +32,30 @@ var shouldDoNativeRequest = function (options) {
     );
 };
 
-Tomahawk.Collection.addTracks = function (params) {
-    return Tomahawk.NativeScriptJobManager.invoke("collectionAddTracks", params);
+Tomahawk.NativeScriptJobManager.progressCallbacks = {};
+
+Tomahawk.NativeScriptJobManager.reportNativeScriptJobProgress = function (requestId, progress) {
+    var callback = this.progressCallbacks[requestId];
+    if (callback) {
+        callback(progress);
+    }
+};
+
+/**
+ * Adds the given tracks to the collection with the given id. Tracks are being stored in chunks.
+ *
+ * @param onProgress optional callback, which is being called with an object containing the
+ *                   "added" and "total" track count after every stored chunk
+ */
+Tomahawk.Collection.addTracks = function (params, onProgress) {
+    var manager = Tomahawk.NativeScriptJobManager;
+    var requestId = manager.idCounter;
+    if (onProgress) {
+        manager.progressCallbacks[requestId] = onProgress;
+    }
+    return manager.invoke("collectionAddTracks", params).finally(function () {
+        delete manager.progressCallbacks[requestId];
+    });
 };
 
 Tomahawk.Collection.wipe = function (params) {
@@ -65,4 +87,57 @@ Tomahawk.error = function (msg, obj) {
     });
     stack = stack.splice(stack[0] == 'Error' ? 2 : 1).join("\n");
     console.error(msg + objString + "\n" + stack + "\n");
-};
\ No newline at end of file
+};
+
+Tomahawk.PluginManager.queuedResults = [];
+
+/**
+ * Invokes all of the given jobs. This way the Java side only has to do one single call for all
+ * ScriptJobs that have been started within the same tick.
+ *
+ * @param jobs array of objects containing the "requestId", "objectId", "methodName" and "params"
+ *             of each job
+ */
+Tomahawk.PluginManager.invokeBatch = function (jobs) {
+    for (var i = 0; i < jobs.length; i++) {
+        this.invokeQueued(jobs[i].requestId, jobs[i].objectId, jobs[i].methodName,
+            jobs[i].params);
+    }
+};
+
+Tomahawk.PluginManager.invokeQueued = function (requestId, objectId, methodName, params) {
+    var that = this;
+    var promise;
+    try {
+        promise = RSVP.Promise.resolve(this.invokeSync(requestId, objectId, methodName, params));
+    } catch (error) {
+        promise = RSVP.Promise.reject(error);
+    }
+    promise.then(function (result) {
+        that.queueResult({
+            requestId: requestId,
+            data: result
+        });
+    }, function (error) {
+        that.queueResult({
+            requestId: requestId,
+            error: error
+        });
+    });
+};
+
+/**
+ * Queues the given result. All results that are available within the same tick are being reported
+ * to the Java side in one single call.
+ */
+Tomahawk.PluginManager.queueResult = function (result) {
+    var that = this;
+    this.queuedResults.push(result);
+    if (this.queuedResults.length === 1) {
+        Tomahawk.setTimeout(function () {
+            var results = that.queuedResults;
+            that.queuedResults = [];
+            Tomahawk.reportScriptJobResultsBatch(encodeParamsToNativeFunctions(results));
+        }, 0);
+    }
+};
@@ -31,6 +31,19 @@ public abstract class Cacheable {
 
     private static final Map<Class, Map<String, Cacheable>> sCaches = new ConcurrentHashMap<>();
 
+    private static final String CACHE_KEY_SEPARATOR = "\t\t";
+
+    private static final int KEY_BUILDER_INITIAL_CAPACITY = 128;
+
+    private static final int KEY_BUILDER_MAX_CAPACITY = 4096;
+
+    private static final ThreadLocal<StringBuilder> sKeyBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(KEY_BUILDER_INITIAL_CAPACITY);
+        }
+    };
+
     private String mCacheKey;
 
     protected Cacheable(Class clss, String cacheKey) {
@@ -60,23 +73,98 @@ public abstract class Cacheable {
         return getCache(clss).get(cacheKey);
     }
 
+    /**
+     * Builds the cache key for a single component. No allocation happens here, since a
+     * single-component key is the component itself.
+     */
+    protected static String getCacheKey(String s0) {
+        return s0 != null ? s0 : "";
+    }
+
+    protected static String getCacheKey(String s0, String s1) {
+        StringBuilder sb = obtainKeyBuilder();
+        appendKeyComponent(sb, 0, s0);
+        appendKeyComponent(sb, 1, s1);
+        return sb.toString();
+    }
+
+    protected static String getCacheKey(String s0, String s1, String s2) {
+        StringBuilder sb = obtainKeyBuilder();
+        appendKeyComponent(sb, 0, s0);
+        appendKeyComponent(sb, 1, s1);
+        appendKeyComponent(sb, 2, s2);
+        return sb.toString();
+    }
+
+    protected static String getCacheKey(String s0, String s1, String s2, String s3) {
+        StringBuilder sb = obtainKeyBuilder();
+        appendKeyComponent(sb, 0, s0);
+        appendKeyComponent(sb, 1, s1);
+        appendKeyComponent(sb, 2, s2);
+        appendKeyComponent(sb, 3, s3);
+        return sb.toString();
+    }
+
+    protected static String getCacheKey(String s0, boolean b1) {
+        StringBuilder sb = obtainKeyBuilder();
+        appendKeyComponent(sb, 0, s0);
+        appendKeyComponent(sb, 1, b1 ? "1" : "0");
+        return sb.toString();
+    }
+
+    protected static String getCacheKey(String s0, String s1, String s2, String s3, boolean b4) {
+        StringBuilder sb = obtainKeyBuilder();
+        appendKeyComponent(sb, 0, s0);
+        appendKeyComponent(sb, 1, s1);
+        appendKeyComponent(sb, 2, s2);
+        appendKeyComponent(sb, 3, s3);
+        appendKeyComponent(sb, 4, b4 ? "1" : "0");
+        return sb.toString();
+    }
+
+    /**
+     * Generic fallback for component combinations that don't have a fixed-arity overload. Produces
+     * exactly the same keys as the overloads above.
+     */
     protected static String getCacheKey(Object... objects) {
-        String result = "";
+        StringBuilder sb = obtainKeyBuilder();
         for (int i = 0; i < objects.length; i++) {
             Object o = objects[i];
-            if (o != null) {
+            if (o instanceof String) {
+                appendKeyComponent(sb, i, (String) o);
+            } else if (o instanceof Boolean) {
+                appendKeyComponent(sb, i, ((Boolean) o) ? "1" : "0");
+            } else if (o != null) {
                 if (i > 0) {
-                    result += "\t\t";
-                }
-                if (o instanceof String) {
-                    result += ((String) o);
-                } else if (o instanceof Boolean) {
-                    result += ((Boolean) o) ? "1" : "0";
-                } else {
-                    Log.e(TAG, "getCacheKey - given Object type is not supported!");
+                    sb.append(CACHE_KEY_SEPARATOR);
                 }
+                Log.e(TAG, "getCacheKey - given Object type is not supported!");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return this thread's reusable key buffer, cleared and ready to be appended to
+     */
+    private static StringBuilder obtainKeyBuilder() {
+        StringBuilder sb = sKeyBuilder.get();
+        if (sb.capacity() > KEY_BUILDER_MAX_CAPACITY) {
+            // Don't hold on to a huge buffer just because of one unusually long key
+            sb = new StringBuilder(KEY_BUILDER_INITIAL_CAPACITY);
+            sKeyBuilder.set(sb);
+        } else {
+            sb.setLength(0);
+        }
+        return sb;
+    }
+
+    private static void appendKeyComponent(StringBuilder sb, int index, String component) {
+        if (component != null) {
+            if (index > 0) {
+                sb.append(CACHE_KEY_SEPARATOR);
             }
+            sb.append(component);
         }
-        return result;
     }
-}
\ No newline at end of file
+}
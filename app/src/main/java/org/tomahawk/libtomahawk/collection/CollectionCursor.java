@@ -17,9 +17,11 @@
  */
 package org.tomahawk.libtomahawk.collection;
 
+import org.tomahawk.libtomahawk.database.DatabaseHelper;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.libtomahawk.resolver.Resolver;
 import org.tomahawk.libtomahawk.resolver.Result;
+import org.tomahawk.libtomahawk.utils.StringPool;
 import org.tomahawk.tomahawk_android.utils.IdGenerator;
 
 import android.database.Cursor;
@@ -29,6 +31,7 @@ import android.util.SparseArray;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CollectionCursor<T> {
 
@@ -38,6 +41,11 @@ public class CollectionCursor<T> {
 
     private Cursor mCursor;
 
+    // The number of CollectionCursors that share mCursor, since copies don't re-query it
+    private AtomicInteger mCursorRefCount;
+
+    private boolean mClosed;
+
     private int mCursorCount;
 
     private List<T> mItems;
@@ -48,8 +56,13 @@ public class CollectionCursor<T> {
 
     private Playlist mPlaylist;
 
+    // Whether or not the rows are the stored entries of a user playlist instead of collection
+    // tracks
+    private boolean mIsStoredPlaylist;
+
     public CollectionCursor(Cursor cursor, Class<T> clss, Resolver resolver, Playlist playlist) {
         mCursor = cursor;
+        mCursorRefCount = new AtomicInteger(1);
         mCursorCount = cursor.getCount();
         mClass = clss;
         if (clss == PlaylistEntry.class || clss == Result.class) {
@@ -70,6 +83,24 @@ public class CollectionCursor<T> {
         }
     }
 
+    /**
+     * Construct a {@link CollectionCursor} over the stored entries of a user {@link Playlist}. The
+     * rows of the given {@link Cursor} must contain the track name, artist name, album name, result
+     * hint, isFetchedViaHatchet flag and playlist entry id in this order.
+     */
+    public CollectionCursor(Cursor cursor, Class<T> clss, Playlist playlist) {
+        if (clss != PlaylistEntry.class || playlist == null) {
+            throw new RuntimeException("Only a CollectionCursor<PlaylistEntry> with a Playlist "
+                    + "can be backed by stored playlist entries!");
+        }
+        mCursor = cursor;
+        mCursorRefCount = new AtomicInteger(1);
+        mCursorCount = cursor.getCount();
+        mClass = clss;
+        mPlaylist = playlist;
+        mIsStoredPlaylist = true;
+    }
+
     public CollectionCursor(List<T> items, Class<T> clss) {
         mItems = items;
         mClass = clss;
@@ -78,9 +109,15 @@ public class CollectionCursor<T> {
     public CollectionCursor<T> copy() {
         CollectionCursor<T> copy;
         if (mCursor != null) {
-            copy = new CollectionCursor<>(mCursor, mClass, mResolver, mPlaylist);
+            if (mIsStoredPlaylist) {
+                copy = new CollectionCursor<>(mCursor, mClass, mPlaylist);
+            } else {
+                copy = new CollectionCursor<>(mCursor, mClass, mResolver, mPlaylist);
+            }
             SparseArray<T> cacheCopy = mCursorCache.clone();
             copy.setCursorCache(cacheCopy);
+            mCursorRefCount.incrementAndGet();
+            copy.mCursorRefCount = mCursorRefCount;
         } else {
             List<T> itemsCopy = new ArrayList<>();
             for (T item : mItems) {
@@ -91,9 +128,16 @@ public class CollectionCursor<T> {
         return copy;
     }
 
+    /**
+     * Releases this CollectionCursor. The underlying {@link Cursor} is only being closed once
+     * every copy of this CollectionCursor has been closed as well.
+     */
     public void close() {
-        if (mCursor != null) {
-            mCursor.close();
+        if (mCursor != null && !mClosed) {
+            mClosed = true;
+            if (mCursorRefCount.decrementAndGet() == 0) {
+                mCursor.close();
+            }
         }
     }
 
@@ -110,9 +154,19 @@ public class CollectionCursor<T> {
             T cachedItem = mCursorCache.get(location);
             if (cachedItem == null) {
                 mCursor.moveToPosition(location);
-                if (mClass == PlaylistEntry.class) {
-                    Artist artist = Artist.get(mCursor.getString(0));
-                    Album album = Album.get(mCursor.getString(2), artist);
+                if (mIsStoredPlaylist) {
+                    Query query = Query.get(mCursor.getString(0), mCursor.getString(2),
+                            mCursor.getString(1), mCursor.getString(3), false,
+                            mCursor.getInt(4) == DatabaseHelper.TRUE);
+                    String entryId = mCursor.getString(5);
+                    if (entryId == null) {
+                        entryId = IdGenerator.getLifetimeUniqueStringId();
+                    }
+                    PlaylistEntry entry = PlaylistEntry.get(mPlaylist.getId(), query, entryId);
+                    cachedItem = (T) entry;
+                } else if (mClass == PlaylistEntry.class) {
+                    Artist artist = Artist.get(StringPool.intern(mCursor.getString(0)));
+                    Album album = Album.get(StringPool.intern(mCursor.getString(2)), artist);
                     Track track = Track.get(mCursor.getString(3), album, artist);
                     track.setDuration(mCursor.getInt(4) * 1000);
                     track.setAlbumPos(mCursor.getInt(7));
@@ -123,23 +177,23 @@ public class CollectionCursor<T> {
                             IdGenerator.getLifetimeUniqueStringId());
                     cachedItem = (T) entry;
                 } else if (mClass == Result.class) {
-                    Artist artist = Artist.get(mCursor.getString(0));
-                    Album album = Album.get(mCursor.getString(2), artist);
+                    Artist artist = Artist.get(StringPool.intern(mCursor.getString(0)));
+                    Album album = Album.get(StringPool.intern(mCursor.getString(2)), artist);
                     Track track = Track.get(mCursor.getString(3), album, artist);
                     track.setDuration(mCursor.getInt(4) * 1000);
                     track.setAlbumPos(mCursor.getInt(7));
                     Result result = Result.get(mCursor.getString(5), track, mResolver);
                     cachedItem = (T) result;
                 } else if (mClass == Album.class) {
-                    Artist artist = Artist.get(mCursor.getString(1));
-                    Album album = Album.get(mCursor.getString(0), artist);
+                    Artist artist = Artist.get(StringPool.intern(mCursor.getString(1)));
+                    Album album = Album.get(StringPool.intern(mCursor.getString(0)), artist);
                     String imagePath = mCursor.getString(3);
                     if (!TextUtils.isEmpty(imagePath)) {
                         album.setImage(Image.get(imagePath, false));
                     }
                     cachedItem = (T) album;
                 } else if (mClass == Artist.class) {
-                    Artist artist = Artist.get(mCursor.getString(0));
+                    Artist artist = Artist.get(StringPool.intern(mCursor.getString(0)));
                     cachedItem = (T) artist;
                 }
                 mCursorCache.put(location, cachedItem);
@@ -161,10 +215,13 @@ public class CollectionCursor<T> {
     public String getArtistName(int location) {
         if (mCursor != null) {
             mCursor.moveToPosition(location);
-            if (mClass == PlaylistEntry.class || mClass == Result.class || mClass == Artist.class) {
-                return mCursor.getString(0);
+            if (mIsStoredPlaylist) {
+                return StringPool.intern(mCursor.getString(1));
+            } else if (mClass == PlaylistEntry.class || mClass == Result.class
+                    || mClass == Artist.class) {
+                return StringPool.intern(mCursor.getString(0));
             } else if (mClass == Album.class) {
-                return mCursor.getString(1);
+                return StringPool.intern(mCursor.getString(1));
             }
         } else {
             Object o = mItems.get(location);
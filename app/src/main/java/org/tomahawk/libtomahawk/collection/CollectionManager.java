@@ -243,7 +243,7 @@ public class CollectionManager {
                 .getAuthenticatorUtils(TomahawkApp.PLUGINNAME_HATCHET);
         if (doSweetSweetLovin) {
             InfoSystem.get().sendRelationshipPostStruct(hatchetAuthUtils, query);
-        } else {
+        } else if (!InfoSystem.get().cancelRelationshipPostStruct(query)) {
             User.getSelf().done(new DoneCallback<User>() {
                 @Override
                 public void onDone(User result) {
@@ -275,19 +275,22 @@ public class CollectionManager {
             InfoSystem.get().sendRelationshipPostStruct(hatchetAuthUtils, artist);
         } else {
             getUserCollection().removeLoved(artist);
-            User.getSelf().done(new DoneCallback<User>() {
-                @Override
-                public void onDone(User result) {
-                    Relationship relationship = result.getRelationship(artist);
-                    if (relationship == null) {
-                        Log.e(TAG, "Can't unlove artist, because there's no relationship"
-                                + " associated with it.");
-                        return;
+            // If the love has never reached Hatchet, there's nothing to delete
+            if (!InfoSystem.get().cancelRelationshipPostStruct(artist)) {
+                User.getSelf().done(new DoneCallback<User>() {
+                    @Override
+                    public void onDone(User result) {
+                        Relationship relationship = result.getRelationship(artist);
+                        if (relationship == null) {
+                            Log.e(TAG, "Can't unlove artist, because there's no relationship"
+                                    + " associated with it.");
+                            return;
+                        }
+                        InfoSystem.get().deleteRelationship(
+                                hatchetAuthUtils, relationship.getCacheKey());
                     }
-                    InfoSystem.get().deleteRelationship(
-                            hatchetAuthUtils, relationship.getCacheKey());
-                }
-            });
+                });
+            }
         }
         UpdatedEvent event = new UpdatedEvent();
         event.mUpdatedItemIds = new HashSet<>();
@@ -310,19 +313,22 @@ public class CollectionManager {
             InfoSystem.get().sendRelationshipPostStruct(hatchetAuthUtils, album);
         } else {
             getUserCollection().removeLoved(album);
-            User.getSelf().done(new DoneCallback<User>() {
-                @Override
-                public void onDone(User result) {
-                    Relationship relationship = result.getRelationship(album);
-                    if (relationship == null) {
-                        Log.e(TAG, "Can't unlove album, because there's no relationship"
-                                + " associated with it.");
-                        return;
+            // If the love has never reached Hatchet, there's nothing to delete
+            if (!InfoSystem.get().cancelRelationshipPostStruct(album)) {
+                User.getSelf().done(new DoneCallback<User>() {
+                    @Override
+                    public void onDone(User result) {
+                        Relationship relationship = result.getRelationship(album);
+                        if (relationship == null) {
+                            Log.e(TAG, "Can't unlove album, because there's no relationship"
+                                    + " associated with it.");
+                            return;
+                        }
+                        InfoSystem.get().deleteRelationship(
+                                hatchetAuthUtils, relationship.getCacheKey());
                     }
-                    InfoSystem.get().deleteRelationship(
-                            hatchetAuthUtils, relationship.getCacheKey());
-                }
-            });
+                });
+            }
         }
         UpdatedEvent event = new UpdatedEvent();
         event.mUpdatedItemIds = new HashSet<>();
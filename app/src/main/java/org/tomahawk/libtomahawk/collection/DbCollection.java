@@ -19,6 +19,8 @@ package org.tomahawk.libtomahawk.collection;
 
 import org.jdeferred.Deferred;
 import org.jdeferred.DoneCallback;
+import org.jdeferred.DoneFilter;
+import org.jdeferred.FailCallback;
 import org.jdeferred.Promise;
 import org.tomahawk.libtomahawk.database.CollectionDb;
 import org.tomahawk.libtomahawk.database.CollectionDbManager;
@@ -38,7 +40,9 @@ import android.util.Log;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -59,6 +63,19 @@ public abstract class DbCollection extends Collection {
 
     private boolean mInitialized;
 
+    /**
+     * Materialized browse results (artists, albums, ...) keyed by query shape and sort mode. All of
+     * them have been loaded for the CollectionDb's browse revision stored in mBrowseCacheRevision.
+     */
+    private final Map<String, List<?>> mBrowseCache = new HashMap<>();
+
+    private long mBrowseCacheRevision;
+
+    /**
+     * DbReads that are currently in flight, keyed by query shape and browse revision
+     */
+    private final Map<String, Deferred<?, Throwable, Void>> mPendingReads = new HashMap<>();
+
     public class InitializedEvent {
 
         String collectionId;
@@ -155,283 +172,347 @@ public abstract class DbCollection extends Collection {
         mWaitingQueries.clear();
     }
 
-    @Override
-    public Promise<Playlist, Throwable, Void> getQueries(final int sortMode) {
-        final Deferred<Playlist, Throwable, Void> deferred = new ADeferredObject<>();
+    /**
+     * @return the cached result of the browse query with the given key, or null if that result
+     * hasn't been cached for the given browse revision yet. The returned list is shared and must
+     * not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> getCachedBrowseResult(String key, long browseRevision) {
+        synchronized (mBrowseCache) {
+            if (mBrowseCacheRevision != browseRevision) {
+                // The CollectionDb has changed, so every cached result is outdated
+                mBrowseCache.clear();
+                mBrowseCacheRevision = browseRevision;
+                return null;
+            }
+            return (List<T>) mBrowseCache.get(key);
+        }
+    }
+
+    /**
+     * Reads all items from the given Cursor and caches them under the given key, unless the
+     * CollectionDb has changed in the meantime.
+     *
+     * @return the materialized items. The returned list is shared and must not be modified.
+     */
+    private <T> List<T> cacheBrowseResult(String key, long browseRevision, Cursor cursor,
+            Class<T> clss) {
+        CollectionCursor<T> collectionCursor = new CollectionCursor<>(cursor, clss, null, null);
+        List<T> items = new ArrayList<>(collectionCursor.size());
+        for (int i = 0; i < collectionCursor.size(); i++) {
+            items.add(collectionCursor.get(i));
+        }
+        collectionCursor.close();
+        synchronized (mBrowseCache) {
+            if (mBrowseCacheRevision == browseRevision) {
+                mBrowseCache.put(key, items);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * A read from the CollectionDb, which is executed on the ThreadManager's pool of db reading
+     * threads.
+     */
+    private interface DbRead<T> {
+
+        void run(String collectionId, Deferred<T, Throwable, Void> deferred);
+    }
+
+    /**
+     * Executes the given DbRead, unless an identical one with the same key is still in flight for
+     * the current browse revision of the CollectionDb. In that case the caller simply shares the
+     * pending result. Reads that have been started before the CollectionDb has changed are never
+     * shared, so that no caller gets an outdated result.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Promise<T, Throwable, Void> executeDbRead(final String key,
+            final DbRead<T> read) {
+        final Deferred<T, Throwable, Void> deferred = new ADeferredObject<>();
         getCollectionId().done(new DoneCallback<String>() {
             @Override
             public void onDone(final String collectionId) {
-                new Thread(new Runnable() {
+                ThreadManager.get().executeDbRead(new Runnable() {
                     @Override
                     public void run() {
-                        String[] orderBy;
-                        switch (sortMode) {
-                            case SORT_ALPHA:
-                                orderBy = new String[]{CollectionDb.TRACKS_TRACK};
-                                break;
-                            case SORT_ARTIST_ALPHA:
-                                orderBy = new String[]{CollectionDb.ARTISTS_ARTIST};
-                                break;
-                            case SORT_LAST_MODIFIED:
-                                orderBy = new String[]{CollectionDb.TRACKS_LASTMODIFIED + " DESC"};
-                                break;
-                            default:
-                                Log.e(TAG,
-                                        collectionId + " - getQueries - sortMode not supported!");
+                        long browseRevision = CollectionDbManager.get()
+                                .getCollectionDb(collectionId).getBrowseRevision();
+                        String revisionKey = key + "_" + browseRevision;
+                        synchronized (mPendingReads) {
+                            Promise<T, Throwable, Void> pending =
+                                    (Promise<T, Throwable, Void>) mPendingReads.get(revisionKey);
+                            if (pending != null) {
+                                pending.done(new DoneCallback<T>() {
+                                    @Override
+                                    public void onDone(T result) {
+                                        deferred.resolve(result);
+                                    }
+                                }).fail(new FailCallback<Throwable>() {
+                                    @Override
+                                    public void onFail(Throwable result) {
+                                        deferred.reject(result);
+                                    }
+                                });
                                 return;
+                            }
+                            mPendingReads.put(revisionKey, deferred);
                         }
-                        CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
-                        String currentRevision = String.valueOf(db.tracksCurrentRevision());
-                        Playlist playlist = Playlist.get(
-                                collectionId + "_tracks_" + currentRevision + "_" + sortMode);
-                        if (playlist.getCurrentRevision().isEmpty()) {
-                            Cursor cursor = db.tracks(null, orderBy);
-                            if (cursor == null) {
-                                deferred.resolve(null);
-                                return;
+                        try {
+                            read.run(collectionId, deferred);
+                        } finally {
+                            synchronized (mPendingReads) {
+                                mPendingReads.remove(revisionKey);
                             }
-                            CollectionCursor<PlaylistEntry> collectionCursor
-                                    = new CollectionCursor<>(
-                                    cursor, PlaylistEntry.class, mResolver, playlist);
-                            playlist.setCursor(collectionCursor);
-                            playlist.setFilled(true);
-                            playlist.setCurrentRevision(currentRevision);
                         }
-                        deferred.resolve(playlist);
                     }
-                }).start();
+                });
             }
         });
         return deferred;
     }
 
+    /**
+     * Executes the given DbRead of a browse result through {@link #executeDbRead(String,
+     * DbRead)}. The materialized result is shared between all coalesced callers, but every caller
+     * gets a CollectionCursor with its own copy of it, so that it is free to close or modify it.
+     */
+    private <T> Promise<CollectionCursor<T>, Throwable, Void> executeBrowseRead(String key,
+            final Class<T> clss, DbRead<List<T>> read) {
+        return executeDbRead(key, read).then(new DoneFilter<List<T>, CollectionCursor<T>>() {
+            @Override
+            public CollectionCursor<T> filterDone(List<T> items) {
+                return items != null ? new CollectionCursor<>(new ArrayList<>(items), clss) : null;
+            }
+        });
+    }
+
     @Override
-    public Promise<CollectionCursor<Artist>, Throwable, Void> getArtists(final int sortMode) {
-        final Deferred<CollectionCursor<Artist>, Throwable, Void> deferred
-                = new ADeferredObject<>();
-        getCollectionId().done(new DoneCallback<String>() {
+    public Promise<Playlist, Throwable, Void> getQueries(final int sortMode) {
+        return executeDbRead("tracks_" + sortMode, new DbRead<Playlist>() {
             @Override
-            public void onDone(final String collectionId) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        String[] orderBy;
-                        switch (sortMode) {
-                            case SORT_ALPHA:
-                                orderBy = new String[]{
-                                        CollectionDb.ARTISTS_ARTIST + " COLLATE NOCASE "};
-                                break;
-                            case SORT_LAST_MODIFIED:
-                                orderBy = new String[]{CollectionDb.ARTISTS_LASTMODIFIED + " DESC"};
-                                break;
-                            default:
-                                Log.e(TAG,
-                                        collectionId + " - getArtists - sortMode not supported!");
-                                return;
-                        }
-                        Cursor cursor = CollectionDbManager.get().getCollectionDb(collectionId)
-                                .artists(orderBy);
-                        CollectionCursor<Artist> collectionCursor =
-                                new CollectionCursor<>(cursor, Artist.class, null, null);
-                        deferred.resolve(collectionCursor);
+            public void run(String collectionId, Deferred<Playlist, Throwable, Void> deferred) {
+                String[] orderBy;
+                switch (sortMode) {
+                    case SORT_ALPHA:
+                        orderBy = new String[]{CollectionDb.TRACKS_TRACK};
+                        break;
+                    case SORT_ARTIST_ALPHA:
+                        orderBy = new String[]{CollectionDb.ARTISTS_ARTIST};
+                        break;
+                    case SORT_LAST_MODIFIED:
+                        orderBy = new String[]{CollectionDb.TRACKS_LASTMODIFIED + " DESC"};
+                        break;
+                    default:
+                        Log.e(TAG, collectionId + " - getQueries - sortMode not supported!");
+                        return;
+                }
+                CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
+                String currentRevision = String.valueOf(db.getBrowseRevision());
+                Playlist playlist = Playlist.get(
+                        collectionId + "_tracks_" + currentRevision + "_" + sortMode);
+                if (playlist.getCurrentRevision().isEmpty()) {
+                    Cursor cursor = db.tracks(null, orderBy);
+                    if (cursor == null) {
+                        deferred.resolve(null);
+                        return;
                     }
-                }).start();
+                    CollectionCursor<PlaylistEntry> collectionCursor = new CollectionCursor<>(
+                            cursor, PlaylistEntry.class, mResolver, playlist);
+                    playlist.setCursor(collectionCursor);
+                    playlist.setFilled(true);
+                    playlist.setCurrentRevision(currentRevision);
+                }
+                deferred.resolve(playlist);
+            }
+        });
+    }
+
+    @Override
+    public Promise<CollectionCursor<Artist>, Throwable, Void> getArtists(final int sortMode) {
+        return executeBrowseRead("artists_" + sortMode, Artist.class, new DbRead<List<Artist>>() {
+            @Override
+            public void run(String collectionId, Deferred<List<Artist>, Throwable, Void> deferred) {
+                String[] orderBy;
+                switch (sortMode) {
+                    case SORT_ALPHA:
+                        orderBy = new String[]{CollectionDb.ARTISTS_ARTIST + " COLLATE NOCASE "};
+                        break;
+                    case SORT_LAST_MODIFIED:
+                        orderBy = new String[]{CollectionDb.ARTISTS_LASTMODIFIED + " DESC"};
+                        break;
+                    default:
+                        Log.e(TAG, collectionId + " - getArtists - sortMode not supported!");
+                        return;
+                }
+                CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
+                long browseRevision = db.getBrowseRevision();
+                String key = "artists_" + sortMode;
+                List<Artist> items = getCachedBrowseResult(key, browseRevision);
+                if (items == null) {
+                    Cursor cursor = db.artists(orderBy);
+                    items = cacheBrowseResult(key, browseRevision, cursor, Artist.class);
+                }
+                deferred.resolve(items);
             }
         });
-        return deferred;
     }
 
     @Override
     public Promise<CollectionCursor<Artist>, Throwable, Void> getAlbumArtists(final int sortMode) {
-        final Deferred<CollectionCursor<Artist>, Throwable, Void> deferred
-                = new ADeferredObject<>();
-        getCollectionId().done(new DoneCallback<String>() {
+        final String key = "albumArtists_" + sortMode;
+        return executeBrowseRead(key, Artist.class, new DbRead<List<Artist>>() {
             @Override
-            public void onDone(final String collectionId) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        String[] orderBy;
-                        switch (sortMode) {
-                            case SORT_ALPHA:
-                                orderBy = new String[]{
-                                        CollectionDb.ARTISTS_ARTIST + " COLLATE NOCASE "};
-                                break;
-                            case SORT_LAST_MODIFIED:
-                                orderBy = new String[]{CollectionDb.ARTISTS_LASTMODIFIED + " DESC"};
-                                break;
-                            default:
-                                Log.e(TAG, collectionId
-                                        + " - getAlbumArtists - sortMode not supported!");
-                                return;
-                        }
-                        Cursor cursor = CollectionDbManager.get().getCollectionDb(collectionId)
-                                .albumArtists(orderBy);
-                        CollectionCursor<Artist> collectionCursor =
-                                new CollectionCursor<>(cursor, Artist.class, null, null);
-                        deferred.resolve(collectionCursor);
-                    }
-                }).start();
+            public void run(String collectionId, Deferred<List<Artist>, Throwable, Void> deferred) {
+                String[] orderBy;
+                switch (sortMode) {
+                    case SORT_ALPHA:
+                        orderBy = new String[]{CollectionDb.ARTISTS_ARTIST + " COLLATE NOCASE "};
+                        break;
+                    case SORT_LAST_MODIFIED:
+                        orderBy = new String[]{CollectionDb.ARTISTS_LASTMODIFIED + " DESC"};
+                        break;
+                    default:
+                        Log.e(TAG, collectionId + " - getAlbumArtists - sortMode not supported!");
+                        return;
+                }
+                CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
+                long browseRevision = db.getBrowseRevision();
+                List<Artist> items = getCachedBrowseResult(key, browseRevision);
+                if (items == null) {
+                    Cursor cursor = db.albumArtists(orderBy);
+                    items = cacheBrowseResult(key, browseRevision, cursor, Artist.class);
+                }
+                deferred.resolve(items);
             }
         });
-        return deferred;
     }
 
     @Override
     public Promise<CollectionCursor<Album>, Throwable, Void> getAlbums(final int sortMode) {
-        final Deferred<CollectionCursor<Album>, Throwable, Void> deferred = new ADeferredObject<>();
-        getCollectionId().done(new DoneCallback<String>() {
+        return executeBrowseRead("albums_" + sortMode, Album.class, new DbRead<List<Album>>() {
             @Override
-            public void onDone(final String collectionId) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        String[] orderBy;
-                        switch (sortMode) {
-                            case SORT_ALPHA:
-                                orderBy = new String[]{
-                                        CollectionDb.ALBUMS_ALBUM + " COLLATE NOCASE "};
-                                break;
-                            case SORT_ARTIST_ALPHA:
-                                orderBy = new String[]{
-                                        CollectionDb.ARTISTS_ARTIST + " COLLATE NOCASE "};
-                                break;
-                            case SORT_LAST_MODIFIED:
-                                orderBy = new String[]{CollectionDb.ALBUMS_LASTMODIFIED + " DESC"};
-                                break;
-                            default:
-                                Log.e(TAG, collectionId + " - getAlbums - sortMode not supported!");
-                                return;
-                        }
-                        Cursor cursor = CollectionDbManager.get().getCollectionDb(collectionId)
-                                .albums(orderBy);
-                        CollectionCursor<Album> collectionCursor =
-                                new CollectionCursor<>(cursor, Album.class, null, null);
-                        deferred.resolve(collectionCursor);
-                    }
-                }).start();
+            public void run(String collectionId, Deferred<List<Album>, Throwable, Void> deferred) {
+                String[] orderBy;
+                switch (sortMode) {
+                    case SORT_ALPHA:
+                        orderBy = new String[]{CollectionDb.ALBUMS_ALBUM + " COLLATE NOCASE "};
+                        break;
+                    case SORT_ARTIST_ALPHA:
+                        orderBy = new String[]{CollectionDb.ARTISTS_ARTIST + " COLLATE NOCASE "};
+                        break;
+                    case SORT_LAST_MODIFIED:
+                        orderBy = new String[]{CollectionDb.ALBUMS_LASTMODIFIED + " DESC"};
+                        break;
+                    default:
+                        Log.e(TAG, collectionId + " - getAlbums - sortMode not supported!");
+                        return;
+                }
+                CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
+                long browseRevision = db.getBrowseRevision();
+                String key = "albums_" + sortMode;
+                List<Album> items = getCachedBrowseResult(key, browseRevision);
+                if (items == null) {
+                    Cursor cursor = db.albums(orderBy);
+                    items = cacheBrowseResult(key, browseRevision, cursor, Album.class);
+                }
+                deferred.resolve(items);
             }
         });
-        return deferred;
     }
 
     @Override
     public Promise<CollectionCursor<Album>, Throwable, Void> getArtistAlbums(final Artist artist) {
-        final Deferred<CollectionCursor<Album>, Throwable, Void> deferred = new ADeferredObject<>();
-        getCollectionId().done(new DoneCallback<String>() {
+        final String key = "artistAlbums_" + artist.getCacheKey();
+        return executeBrowseRead(key, Album.class, new DbRead<List<Album>>() {
             @Override
-            public void onDone(final String result) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        Cursor cursor = CollectionDbManager.get().getCollectionDb(result)
-                                .artistAlbums(artist.getName(), "");
-                        if (cursor == null) {
-                            deferred.resolve(null);
-                            return;
-                        }
-                        CollectionCursor<Album> collectionCursor =
-                                new CollectionCursor<>(cursor, Album.class, null, null);
-                        deferred.resolve(collectionCursor);
+            public void run(String collectionId, Deferred<List<Album>, Throwable, Void> deferred) {
+                CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
+                long browseRevision = db.getBrowseRevision();
+                List<Album> items = getCachedBrowseResult(key, browseRevision);
+                if (items == null) {
+                    Cursor cursor = db.artistAlbums(artist.getName(), "");
+                    if (cursor == null) {
+                        deferred.resolve(null);
+                        return;
                     }
-                }).start();
+                    items = cacheBrowseResult(key, browseRevision, cursor, Album.class);
+                }
+                deferred.resolve(items);
             }
         });
-        return deferred;
     }
 
     @Override
     public Promise<Playlist, Throwable, Void> getArtistTracks(final Artist artist) {
-        final Deferred<Playlist, Throwable, Void> deferred = new ADeferredObject<>();
-        getCollectionId().done(new DoneCallback<String>() {
+        return executeDbRead("artistTracks_" + artist.getCacheKey(), new DbRead<Playlist>() {
             @Override
-            public void onDone(final String collectionId) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
-                        String currentRevision =
-                                String.valueOf(db.artistCurrentRevision(artist.getName(), ""));
-                        Playlist playlist = Playlist.get(
-                                collectionId + "_" + artist.getCacheKey() + "_" + currentRevision);
-                        if (playlist.getCurrentRevision().isEmpty()) {
-                            Cursor cursor = db.artistTracks(artist.getName(), "");
-                            if (cursor == null) {
-                                deferred.resolve(null);
-                                return;
-                            }
-                            CollectionCursor<PlaylistEntry> collectionCursor
-                                    = new CollectionCursor<>(
-                                    cursor, PlaylistEntry.class, mResolver, playlist);
-                            playlist.setCursor(collectionCursor);
-                            playlist.setFilled(true);
-                            playlist.setCurrentRevision(currentRevision);
-                        }
-                        deferred.resolve(playlist);
+            public void run(String collectionId, Deferred<Playlist, Throwable, Void> deferred) {
+                CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
+                String currentRevision =
+                        String.valueOf(db.artistCurrentRevision(artist.getName(), ""));
+                Playlist playlist = Playlist.get(
+                        collectionId + "_" + artist.getCacheKey() + "_" + currentRevision);
+                if (playlist.getCurrentRevision().isEmpty()) {
+                    Cursor cursor = db.artistTracks(artist.getName(), "");
+                    if (cursor == null) {
+                        deferred.resolve(null);
+                        return;
                     }
-                }).start();
+                    CollectionCursor<PlaylistEntry> collectionCursor = new CollectionCursor<>(
+                            cursor, PlaylistEntry.class, mResolver, playlist);
+                    playlist.setCursor(collectionCursor);
+                    playlist.setFilled(true);
+                    playlist.setCurrentRevision(currentRevision);
+                }
+                deferred.resolve(playlist);
             }
         });
-        return deferred;
     }
 
     @Override
     public Promise<Playlist, Throwable, Void> getAlbumTracks(final Album album) {
-        final Deferred<Playlist, Throwable, Void> deferred = new ADeferredObject<>();
-        getCollectionId().done(new DoneCallback<String>() {
+        return executeDbRead("albumTracks_" + album.getCacheKey(), new DbRead<Playlist>() {
             @Override
-            public void onDone(final String collectionId) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
-                        String currentRevision = String.valueOf(db.albumCurrentRevision(
-                                album.getName(), album.getArtist().getName(), ""));
-                        Playlist playlist = Playlist.get(
-                                collectionId + "_" + album.getCacheKey() + "_" + currentRevision);
-                        if (playlist.getCurrentRevision().isEmpty()) {
-                            Cursor cursor = db.albumTracks(
-                                    album.getName(), album.getArtist().getName(), "");
-                            if (cursor == null) {
-                                deferred.resolve(null);
-                                return;
-                            }
-                            CollectionCursor<PlaylistEntry> collectionCursor
-                                    = new CollectionCursor<>(
-                                    cursor, PlaylistEntry.class, mResolver, playlist);
-                            playlist.setCursor(collectionCursor);
-                            playlist.setFilled(true);
-                            playlist.setCurrentRevision(currentRevision);
-                        }
-                        deferred.resolve(playlist);
+            public void run(String collectionId, Deferred<Playlist, Throwable, Void> deferred) {
+                CollectionDb db = CollectionDbManager.get().getCollectionDb(collectionId);
+                String currentRevision = String.valueOf(db.albumCurrentRevision(
+                        album.getName(), album.getArtist().getName(), ""));
+                Playlist playlist = Playlist.get(
+                        collectionId + "_" + album.getCacheKey() + "_" + currentRevision);
+                if (playlist.getCurrentRevision().isEmpty()) {
+                    Cursor cursor = db.albumTracks(
+                            album.getName(), album.getArtist().getName(), "");
+                    if (cursor == null) {
+                        deferred.resolve(null);
+                        return;
                     }
-                }).start();
+                    CollectionCursor<PlaylistEntry> collectionCursor = new CollectionCursor<>(
+                            cursor, PlaylistEntry.class, mResolver, playlist);
+                    playlist.setCursor(collectionCursor);
+                    playlist.setFilled(true);
+                    playlist.setCurrentRevision(currentRevision);
+                }
+                deferred.resolve(playlist);
             }
         });
-        return deferred;
     }
 
     @Override
     public Promise<Integer, Throwable, Void> getAlbumTrackCount(final Album album) {
-        final Deferred<Integer, Throwable, Void> deferred = new ADeferredObject<>();
-        getCollectionId().done(new DoneCallback<String>() {
+        return executeDbRead("albumTrackCount_" + album.getCacheKey(), new DbRead<Integer>() {
             @Override
-            public void onDone(final String collectionId) {
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        Cursor cursor = CollectionDbManager.get().getCollectionDb(collectionId)
-                                .albumTracks(album.getName(), album.getArtist().getName(), "");
-                        if (cursor == null) {
-                            deferred.resolve(null);
-                            return;
-                        }
-                        deferred.resolve(cursor.getCount());
-                        cursor.close();
-                    }
-                }).start();
+            public void run(String collectionId, Deferred<Integer, Throwable, Void> deferred) {
+                Cursor cursor = CollectionDbManager.get().getCollectionDb(collectionId)
+                        .albumTracks(album.getName(), album.getArtist().getName(), "");
+                if (cursor == null) {
+                    deferred.resolve(null);
+                    return;
+                }
+                deferred.resolve(cursor.getCount());
+                cursor.close();
             }
         });
-        return deferred;
     }
 }
@@ -0,0 +1,188 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2016, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.database.DatabaseHelper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact, key-only index of all media items that have been stored in the media table. Instead
+ * of the locations themselves it only holds a 64-bit hash of each location, the hash of its
+ * parent location and a flag that tells whether or not the media item has been seen during the
+ * current scan. This is all a media scan needs to know about the media items that have already
+ * been parsed.
+ *
+ * The flags can be set concurrently by multiple threads.
+ */
+public class MediaLocationIndex implements DatabaseHelper.MediaLocationCallback {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // Marks an empty slot. A location that actually hashes to 0 is being stored as 1 instead.
+    private static final long EMPTY = 0L;
+
+    private long[] mHashes = new long[16];
+
+    private long[] mParentHashes = new long[16];
+
+    private boolean[] mSeen = new boolean[16];
+
+    private int mSize;
+
+    // Maps the hash of a parent location to the slots of all of its children
+    private Map<Long, int[]> mChildSlots;
+
+    /**
+     * Adds the media item with the given location to this index. Must not be called anymore once
+     * the scan has started.
+     */
+    @Override
+    public void onMediaLocation(String location) {
+        if ((mSize + 1) > mHashes.length * LOAD_FACTOR) {
+            resize(mHashes.length * 2);
+        }
+        long hash = hash(location);
+        int slot = findSlot(mHashes, hash);
+        if (mHashes[slot] == EMPTY) {
+            mHashes[slot] = hash;
+            mSize++;
+        }
+        mParentHashes[slot] = hash(parentLocation(location));
+        mChildSlots = null;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean contains(String location) {
+        return mHashes[findSlot(mHashes, hash(location))] != EMPTY;
+    }
+
+    /**
+     * Marks the media item with the given location as seen.
+     *
+     * @return false if the location isn't contained in this index or has already been seen
+     */
+    public boolean markSeen(String location) {
+        int slot = findSlot(mHashes, hash(location));
+        if (mHashes[slot] == EMPTY || mSeen[slot]) {
+            return false;
+        }
+        mSeen[slot] = true;
+        return true;
+    }
+
+    /**
+     * Marks all media items that are located directly inside of the given parent location as
+     * seen.
+     *
+     * @return the number of media items that have been marked
+     */
+    public int markChildrenSeen(String parentLocation) {
+        int[] slots = getChildSlots().get(hash(parentLocation));
+        int count = 0;
+        if (slots != null) {
+            for (int slot : slots) {
+                if (!mSeen[slot]) {
+                    mSeen[slot] = true;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public boolean isSeen(String location) {
+        int slot = findSlot(mHashes, hash(location));
+        return mHashes[slot] != EMPTY && mSeen[slot];
+    }
+
+    private synchronized Map<Long, int[]> getChildSlots() {
+        if (mChildSlots == null) {
+            Map<Long, int[]> childSlots = new HashMap<>();
+            Map<Long, Integer> childCounts = new HashMap<>();
+            for (int slot = 0; slot < mHashes.length; slot++) {
+                if (mHashes[slot] != EMPTY) {
+                    Integer count = childCounts.get(mParentHashes[slot]);
+                    childCounts.put(mParentHashes[slot], count == null ? 1 : count + 1);
+                }
+            }
+            for (int slot = 0; slot < mHashes.length; slot++) {
+                if (mHashes[slot] != EMPTY) {
+                    int[] slots = childSlots.get(mParentHashes[slot]);
+                    if (slots == null) {
+                        slots = new int[childCounts.get(mParentHashes[slot])];
+                        childSlots.put(mParentHashes[slot], slots);
+                    }
+                    // The slots are being filled from the back, the remaining count is our index
+                    int remaining = childCounts.get(mParentHashes[slot]) - 1;
+                    childCounts.put(mParentHashes[slot], remaining);
+                    slots[remaining] = slot;
+                }
+            }
+            mChildSlots = childSlots;
+        }
+        return mChildSlots;
+    }
+
+    private void resize(int capacity) {
+        long[] hashes = new long[capacity];
+        long[] parentHashes = new long[capacity];
+        boolean[] seen = new boolean[capacity];
+        for (int i = 0; i < mHashes.length; i++) {
+            if (mHashes[i] != EMPTY) {
+                int slot = findSlot(hashes, mHashes[i]);
+                hashes[slot] = mHashes[i];
+                parentHashes[slot] = mParentHashes[i];
+                seen[slot] = mSeen[i];
+            }
+        }
+        mHashes = hashes;
+        mParentHashes = parentHashes;
+        mSeen = seen;
+    }
+
+    private static int findSlot(long[] hashes, long hash) {
+        int mask = hashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (hashes[slot] != EMPTY && hashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static String parentLocation(String location) {
+        int slashIndex = location.lastIndexOf('/');
+        return slashIndex > 0 ? location.substring(0, slashIndex) : "";
+    }
+
+    /**
+     * A 64-bit FNV-1a hash. With 64 bits, collisions are negligible even for huge libraries.
+     */
+    private static long hash(String s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY ? 1L : hash;
+    }
+}
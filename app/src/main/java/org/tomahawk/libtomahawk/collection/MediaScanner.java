@@ -0,0 +1,401 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2016, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.libtomahawk.database.DatabaseHelper;
+import org.tomahawk.libtomahawk.database.DatabaseHelper.MediaDirFingerprint;
+import org.tomahawk.tomahawk_android.mediaplayers.VLCMediaPlayer;
+import org.tomahawk.tomahawk_android.utils.MediaWrapper;
+import org.videolan.libvlc.Media;
+import org.videolan.libvlc.util.AndroidUtil;
+
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.greenrobot.event.EventBus;
+
+/**
+ * Scans the given media directories for media files. Directories are being walked by a couple of
+ * walker threads, which feed all found files into a bounded queue. A pool of parser threads takes
+ * the files from that queue and parses the ones that haven't been parsed before. Newly parsed
+ * files are being stored in batches, so that an interrupted scan doesn't have to start from
+ * scratch. Directories that haven't changed since the last finished scan aren't being listed
+ * again, their content is being looked up from the stored {@link MediaDirFingerprint}s and media
+ * items instead.
+ */
+class MediaScanner {
+
+    private static final String TAG = MediaScanner.class.getSimpleName();
+
+    private static final int NUMBER_OF_CORES = Runtime.getRuntime().availableProcessors();
+
+    // Listing directories is I/O bound, more threads don't help on flash storage
+    private static final int WALKER_THREADS = 2;
+
+    private static final int PARSER_THREADS = Math.max(1, Math.min(4, NUMBER_OF_CORES));
+
+    private static final int FILE_QUEUE_CAPACITY = 256;
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final long TIMESTAMP_GRANULARITY = 2000L;
+
+    // Marks the end of the file queue
+    private static final File END_OF_QUEUE = new File("");
+
+    public static class ProgressEvent {
+
+        public int foundCount;
+
+        public int processedCount;
+    }
+
+    public interface StopSignal {
+
+        boolean isStopping();
+    }
+
+    private final MediaLocationIndex mExistingMedias;
+
+    private final Map<String, MediaDirFingerprint> mStoredFingerprints;
+
+    // The paths of all known subdirectories mapped to their parent path
+    private final Map<String, List<String>> mKnownSubDirs = new HashMap<>();
+
+    private final Map<String, MediaDirFingerprint> mFingerprints = new ConcurrentHashMap<>();
+
+    private final long mStartTime = System.currentTimeMillis();
+
+    private final FileFilter mFileFilter;
+
+    private final StopSignal mStopSignal;
+
+    private final BlockingQueue<File> mFileQueue = new LinkedBlockingQueue<>(FILE_QUEUE_CAPACITY);
+
+    private final Set<String> mScannedDirectories =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // The locations of all media files that haven't been stored before, existing media files are
+    // being marked as seen in mExistingMedias instead
+    private final Set<String> mNewLocations =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // The number of directories that have been submitted but not walked yet
+    private final AtomicInteger mPendingDirectories = new AtomicInteger();
+
+    private final AtomicInteger mFoundCount = new AtomicInteger();
+
+    private final AtomicInteger mProcessedCount = new AtomicInteger();
+
+    private final AtomicInteger mParsedCount = new AtomicInteger();
+
+    private final AtomicInteger mSkippedCount = new AtomicInteger();
+
+    private ExecutorService mWalkerPool;
+
+    /**
+     * @param existingMedias the {@link MediaLocationIndex} of all media items that have already
+     *                       been stored. Every media item that is being found is marked as seen.
+     * @param fingerprints   the {@link MediaDirFingerprint}s of the last finished scan, mapped to
+     *                       their path
+     * @param fileFilter     the {@link FileFilter} that decides which files and folders are
+     *                       scanned
+     * @param stopSignal     is being polled to find out whether or not the scan should be aborted
+     */
+    MediaScanner(MediaLocationIndex existingMedias,
+            Map<String, MediaDirFingerprint> fingerprints, FileFilter fileFilter,
+            StopSignal stopSignal) {
+        mExistingMedias = existingMedias;
+        mStoredFingerprints = fingerprints;
+        mFileFilter = fileFilter;
+        mStopSignal = stopSignal;
+
+        for (String path : fingerprints.keySet()) {
+            int slashIndex = path.lastIndexOf('/');
+            if (slashIndex > 0) {
+                String parentPath = path.substring(0, slashIndex);
+                List<String> subDirs = mKnownSubDirs.get(parentPath);
+                if (subDirs == null) {
+                    subDirs = new ArrayList<>();
+                    mKnownSubDirs.put(parentPath, subDirs);
+                }
+                subDirs.add(path);
+            }
+        }
+    }
+
+    /**
+     * Scans the given directories and blocks until the scan has finished. All new media items are
+     * being stored in the database.
+     *
+     * @return whether or not the scan has finished without being stopped
+     */
+    boolean scan(List<File> mediaDirs) {
+        long time = System.currentTimeMillis();
+        mWalkerPool = Executors.newFixedThreadPool(WALKER_THREADS);
+        ExecutorService parserPool = Executors.newFixedThreadPool(PARSER_THREADS);
+        final CountDownLatch parsersDone = new CountDownLatch(PARSER_THREADS);
+        try {
+            for (int i = 0; i < PARSER_THREADS; i++) {
+                parserPool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            parseFiles();
+                        } finally {
+                            parsersDone.countDown();
+                        }
+                    }
+                });
+            }
+            // Make sure that the file queue isn't ended before all media dirs have been submitted
+            mPendingDirectories.incrementAndGet();
+            for (File dir : mediaDirs) {
+                Log.d(TAG, "Scanning directory: " + dir);
+                submitDirectory(dir);
+            }
+            onDirectoryDone();
+            parsersDone.await();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "scan - " + e.getClass() + ": " + e.getLocalizedMessage());
+            return false;
+        } finally {
+            mWalkerPool.shutdownNow();
+            parserPool.shutdownNow();
+        }
+        Log.d(TAG, "Scanned " + mFoundCount.get() + " files in "
+                + (System.currentTimeMillis() - time) + "ms. Actually parsed "
+                + mParsedCount.get() + " files. Skipped listing " + mSkippedCount.get()
+                + " of " + mFingerprints.size() + " unchanged directories.");
+        if (mStopSignal.isStopping()) {
+            Log.d(TAG, "Stopping scan");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the {@link MediaDirFingerprint}s of all directories that have been walked
+     */
+    Collection<MediaDirFingerprint> getFingerprints() {
+        return mFingerprints.values();
+    }
+
+    private void submitDirectory(final File dir) {
+        mPendingDirectories.incrementAndGet();
+        mWalkerPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!mStopSignal.isStopping()) {
+                        walkDirectory(dir);
+                    }
+                } finally {
+                    onDirectoryDone();
+                }
+            }
+        });
+    }
+
+    private void onDirectoryDone() {
+        if (mPendingDirectories.decrementAndGet() == 0) {
+            endFileQueue();
+        }
+    }
+
+    private void walkDirectory(File dir) {
+        String path = dir.getAbsolutePath();
+        String dirPath = path;
+
+        // Skip some system folders
+        if (dirPath.startsWith("/proc/") || dirPath.startsWith("/sys/")
+                || dirPath.startsWith("/dev/")) {
+            return;
+        }
+
+        // Do not scan again if same canonical path
+        try {
+            dirPath = dir.getCanonicalPath();
+        } catch (IOException e) {
+            Log.e(TAG, "walkDirectory - " + e.getClass() + ": " + e.getLocalizedMessage());
+        }
+        if (!mScannedDirectories.add(dirPath)) {
+            return;
+        }
+
+        // A directory's lastModified timestamp changes whenever a child is being added, removed or
+        // renamed. So if it hasn't changed, we already know all of its children.
+        long lastModified = dir.lastModified();
+        MediaDirFingerprint fingerprint = mStoredFingerprints.get(path);
+        if (fingerprint != null && fingerprint.lastModified == lastModified) {
+            mFingerprints.put(path, fingerprint);
+            List<String> subDirs = mKnownSubDirs.get(path);
+            if (subDirs != null) {
+                for (String subDir : subDirs) {
+                    submitDirectory(new File(subDir));
+                }
+            }
+            int mediaCount =
+                    mExistingMedias.markChildrenSeen(AndroidUtil.FileToUri(dir).toString());
+            mFoundCount.addAndGet(mediaCount);
+            mProcessedCount.addAndGet(mediaCount);
+            mSkippedCount.incrementAndGet();
+            return;
+        }
+
+        fingerprint = new MediaDirFingerprint();
+        fingerprint.path = path;
+        // Timestamps can be as coarse as 2 seconds (e.g. on FAT), so we can't trust a timestamp
+        // that is that close to the start of the scan
+        fingerprint.lastModified =
+                lastModified < mStartTime - TIMESTAMP_GRANULARITY ? lastModified : -1;
+
+        // Do no scan media in .nomedia folders
+        if (new File(dirPath + "/.nomedia").exists()) {
+            mFingerprints.put(path, fingerprint);
+            return;
+        }
+
+        // Filter the extensions and the folders
+        File[] files;
+        try {
+            files = dir.listFiles(mFileFilter);
+        } catch (Exception e) {
+            // listFiles can fail in OutOfMemoryError, go to the next folder
+            Log.e(TAG, "walkDirectory - " + e.getClass() + ": " + e.getLocalizedMessage());
+            return;
+        }
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    try {
+                        mFileQueue.put(file);
+                        mFoundCount.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Log.e(TAG, "walkDirectory - " + e.getClass() + ": "
+                                + e.getLocalizedMessage());
+                        return;
+                    }
+                } else if (file.isDirectory()) {
+                    submitDirectory(file);
+                }
+            }
+            mFingerprints.put(path, fingerprint);
+        }
+    }
+
+    private void endFileQueue() {
+        try {
+            for (int i = 0; i < PARSER_THREADS; i++) {
+                mFileQueue.put(END_OF_QUEUE);
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "endFileQueue - " + e.getClass() + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private void parseFiles() {
+        List<MediaWrapper> batch = new ArrayList<>();
+        try {
+            while (true) {
+                File file = mFileQueue.take();
+                if (file == END_OF_QUEUE) {
+                    break;
+                }
+                if (mStopSignal.isStopping()) {
+                    // Keep draining the queue, so that no walker stays blocked
+                    continue;
+                }
+                MediaWrapper mw = processFile(file);
+                if (mw != null) {
+                    batch.add(mw);
+                    if (batch.size() >= BATCH_SIZE) {
+                        storeBatch(batch);
+                    }
+                }
+                mProcessedCount.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Log.e(TAG, "parseFiles - " + e.getClass() + ": " + e.getLocalizedMessage());
+        } finally {
+            storeBatch(batch);
+        }
+    }
+
+    /**
+     * @return the newly parsed {@link MediaWrapper} of the given file or null if the file has
+     * already been stored before or should be skipped
+     */
+    private MediaWrapper processFile(File file) {
+        String fileURI = AndroidUtil.FileToUri(file).toString();
+        if (mExistingMedias.contains(fileURI)) {
+            mExistingMedias.markSeen(fileURI);
+            return null;
+        }
+        // only add a file once, eg. if a user selects a subfolder as well
+        if (!mNewLocations.add(fileURI)) {
+            return null;
+        }
+        // create new media item
+        Media media = new Media(VLCMediaPlayer.getLibVlcInstance(), Uri.parse(fileURI));
+        media.parse();
+        mParsedCount.incrementAndGet();
+        // skip files with .mod extension and no duration
+        if ((media.getDuration() == 0 || (media.getTrackCount() != 0
+                && TextUtils.isEmpty(media.getTrack(0).codec)))
+                && fileURI.endsWith(".mod")) {
+            Log.d(TAG, "File skipped: " + fileURI);
+            media.release();
+            return null;
+        }
+        MediaWrapper mw = new MediaWrapper(media);
+        media.release();
+        mw.setLastModified(file.lastModified());
+        return mw;
+    }
+
+    private void storeBatch(List<MediaWrapper> batch) {
+        if (!batch.isEmpty()) {
+            DatabaseHelper.get().addMedias(batch);
+            batch.clear();
+            ProgressEvent event = new ProgressEvent();
+            event.foundCount = mFoundCount.get();
+            event.processedCount = mProcessedCount.get();
+            EventBus.getDefault().post(event);
+        }
+    }
+}
@@ -88,6 +88,9 @@ public class Playlist extends Cacheable implements AlphaComparable {
 
     public Playlist copy(Playlist destination) {
         destination.mName = mName;
+        if (destination.mCursor != null) {
+            destination.mCursor.close();
+        }
         destination.mCursor = mCursor.copy();
         for (PlaylistEntry entry : mAddedEntries) {
             destination.mAddedEntries.add(entry);
@@ -180,6 +183,10 @@ public class Playlist extends Cacheable implements AlphaComparable {
     }
 
     public void setCursor(CollectionCursor<PlaylistEntry> cursor) {
+        if (mCursor != null && mCursor != cursor) {
+            // Otherwise every reload of a stored playlist would leak its previous Cursor
+            mCursor.close();
+        }
         mCursor = cursor;
         initIndex();
     }
@@ -29,19 +29,14 @@ import org.tomahawk.libtomahawk.resolver.UserCollectionStubResolver;
 import org.tomahawk.libtomahawk.resolver.models.ScriptResolverTrack;
 import org.tomahawk.libtomahawk.utils.ADeferredObject;
 import org.tomahawk.tomahawk_android.TomahawkApp;
-import org.tomahawk.tomahawk_android.mediaplayers.VLCMediaPlayer;
 import org.tomahawk.tomahawk_android.utils.MediaWrapper;
 import org.tomahawk.tomahawk_android.utils.PreferenceUtils;
 import org.tomahawk.tomahawk_android.utils.WeakReferenceHandler;
-import org.videolan.libvlc.Media;
-import org.videolan.libvlc.util.AndroidUtil;
 import org.videolan.libvlc.util.Extensions;
 
-import android.net.Uri;
 import android.os.Environment;
 import android.os.Looper;
 import android.os.Message;
-import android.text.TextUtils;
 import android.util.Log;
 import android.widget.ImageView;
 
@@ -53,13 +48,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -186,137 +178,54 @@ public class UserCollection extends DbCollection {
             PreferenceUtils.edit().putStringSet(HAS_SET_DEFAULTDIRS, setDefaultDirs).commit();
 
             List<File> mediaDirs = DatabaseHelper.get().getMediaDirs(false);
-            Stack<File> directories = new Stack<>();
-            directories.addAll(mediaDirs);
-            for (File dir : directories) {
-                Log.d(TAG, "Scanning directory: " + dir);
-            }
-
-            // get all existing media items
-            HashMap<String, MediaWrapper> existingMedias = DatabaseHelper.get().getMedias();
-
-            // list of all added files
-            HashSet<String> addedLocations = new HashSet<>();
 
-            ArrayList<File> mediaToScan = new ArrayList<>();
-            try {
-                long listFilesTimeBefore = System.currentTimeMillis();
-                final HashSet<String> directoriesScanned = new HashSet<>();
-                // Count total files, and stack them
-                while (!directories.isEmpty()) {
-                    File dir = directories.pop();
-                    String dirPath = dir.getAbsolutePath();
-
-                    // Skip some system folders
-                    if (dirPath.startsWith("/proc/") || dirPath.startsWith("/sys/")
-                            || dirPath.startsWith("/dev/")) {
-                        continue;
-                    }
+            // get a key-only index of all existing media items
+            final MediaLocationIndex index = new MediaLocationIndex();
+            DatabaseHelper.get().forEachMediaLocation(index);
 
-                    // Do not scan again if same canonical path
-                    try {
-                        dirPath = dir.getCanonicalPath();
-                    } catch (IOException e) {
-                        Log.e(TAG, "GetMediaItemsRunnable#run() - " + e.getClass() + ": "
-                                + e.getLocalizedMessage());
-                    }
-                    if (directoriesScanned.contains(dirPath)) {
-                        continue;
-                    } else {
-                        directoriesScanned.add(dirPath);
-                    }
-
-                    // Do no scan media in .nomedia folders
-                    if (new File(dirPath + "/.nomedia").exists()) {
-                        continue;
-                    }
-
-                    // Filter the extensions and the folders
-                    try {
-                        File[] f = dir.listFiles(new MediaItemFilter());
-                        if (f != null) {
-                            for (File file : f) {
-                                if (file.isFile()) {
-                                    mediaToScan.add(file);
-                                } else if (file.isDirectory()) {
-                                    directories.push(file);
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        // listFiles can fail in OutOfMemoryError, go to the next folder
-                        Log.e(TAG, "GetMediaItemsRunnable#run() - " + e.getClass() + ": "
-                                + e.getLocalizedMessage());
-                        continue;
-                    }
-
-                    if (mIsStopping) {
-                        Log.d(TAG, "Stopping scan");
-                        return;
-                    }
-                }
-                long listFilesTime = System.currentTimeMillis() - listFilesTimeBefore;
-                int parseCounter = 0;
-                long parsingTimeBefore = System.currentTimeMillis();
-                ArrayList<MediaWrapper> mediaWrappers = new ArrayList<>();
-                // Process the stacked items
-                for (File file : mediaToScan) {
-                    String fileURI = AndroidUtil.FileToUri(file).toString();
-                    if (existingMedias.containsKey(fileURI)) {
-                        //Log.d(TAG, "File has already been scanned: " + fileURI);
-                        // only add file if it is not already in the list. eg. if a user selects a
-                        // subfolder as well
-                        if (!addedLocations.contains(fileURI)) {
-                            //Log.d(TAG, "File added to processing queue: " + fileURI);
-                            // get existing media item from database
-                            mediaWrappers.add(existingMedias.get(fileURI));
-                            addedLocations.add(fileURI);
-                        }
-                    } else {
-                        // create new media item
-                        final Media media = new Media(VLCMediaPlayer.getLibVlcInstance(),
-                                Uri.parse(fileURI));
-                        media.parse();
-                        parseCounter++;
-                        // skip files with .mod extension and no duration
-                        if ((media.getDuration() == 0 || (media.getTrackCount() != 0
-                                && TextUtils.isEmpty(media.getTrack(0).codec)))
-                                && fileURI.endsWith(".mod")) {
-                            Log.d(TAG, "File skipped: " + fileURI);
-                            continue;
+            MediaScanner scanner = new MediaScanner(index,
+                    DatabaseHelper.get().getMediaDirFingerprints(), new MediaItemFilter(),
+                    new MediaScanner.StopSignal() {
+                        @Override
+                        public boolean isStopping() {
+                            return mIsStopping;
                         }
-                        //Log.d(TAG, "File added to database and processing queue: " + fileURI);
-                        MediaWrapper mw = new MediaWrapper(media);
-                        media.release();
-                        mw.setLastModified(file.lastModified());
-                        mediaWrappers.add(mw);
-                    }
-                    if (mIsStopping) {
-                        Log.d(TAG, "Stopping scan");
-                        return;
-                    }
+                    });
+            try {
+                // New media items are being added to the database while scanning
+                if (!scanner.scan(mediaDirs)) {
+                    return;
                 }
-                Log.d(TAG, "Listing files took " + listFilesTime + "ms.");
-                Log.d(TAG, "Scanned " + mediaToScan.size() + " files.");
-                Log.d(TAG, "Actually parsed " + parseCounter + " files.");
-                Log.d(TAG,
-                        "Parsing took " + (System.currentTimeMillis() - parsingTimeBefore) + "ms.");
-                // Add all items to the database
-                DatabaseHelper.get().addMedias(mediaWrappers);
-
-                processMediaWrappers(mediaWrappers);
-            } finally {
-                // remove old files & folders from database if storage is mounted
+
+                // remove old files & folders from database if storage is mounted. Otherwise the
+                // media table still contains the files of the unmounted storage, so the collection
+                // isn't being synced with it either.
                 if (!mIsStopping && Environment.getExternalStorageState()
                         .equals(Environment.MEDIA_MOUNTED)) {
-                    for (String fileURI : addedLocations) {
-                        existingMedias.remove(fileURI);
-                    }
-                    Log.d(TAG, "Removed " + existingMedias.keySet().size()
+                    final List<String> removedLocations = new ArrayList<>();
+                    DatabaseHelper.get().forEachMediaLocation(
+                            new DatabaseHelper.MediaLocationCallback() {
+                                @Override
+                                public void onMediaLocation(String location) {
+                                    // Media items that have been added during this scan aren't
+                                    // contained in the index and must not be removed
+                                    if (index.contains(location) && !index.isSeen(location)) {
+                                        removedLocations.add(location);
+                                    }
+                                }
+                            });
+                    Log.d(TAG, "Removed " + removedLocations.size()
                             + " media items from database");
-                    DatabaseHelper.get().removeMedias(existingMedias.keySet());
-                }
+                    DatabaseHelper.get().removeMedias(removedLocations);
+
+                    processMediaWrappers();
 
+                    // Only store the fingerprints once the media table and the collection are in
+                    // sync with the scanned directories. Otherwise the next scan would skip
+                    // directories whose changes have never been applied.
+                    DatabaseHelper.get().storeMediaDirFingerprints(scanner.getFingerprints());
+                }
+            } finally {
                 if (mRestart) {
                     Log.d(TAG, "Restarting scan");
                     mRestart = false;
@@ -328,39 +237,31 @@ public class UserCollection extends DbCollection {
             }
         }
 
-        private void processMediaWrappers(List<MediaWrapper> mws) {
-            Log.d(TAG, "Processing " + mws.size() + " media items...");
-            Map<String, Set<String>> albumArtistsMap = new HashMap<>();
-            for (MediaWrapper mw : mws) {
-                if (mw.getType() == MediaWrapper.TYPE_AUDIO) {
-                    String albumKey = mw.getAlbum() != null ? mw.getAlbum().toLowerCase() : "";
-                    if (albumArtistsMap.get(albumKey) == null) {
-                        albumArtistsMap.put(albumKey, new HashSet<String>());
-                    }
-                    albumArtistsMap.get(albumKey).add(mw.getArtist());
-                }
-            }
-            List<ScriptResolverTrack> tracks = new ArrayList<>();
-            for (MediaWrapper mw : mws) {
-                if (mw.getType() == MediaWrapper.TYPE_AUDIO) {
-                    ScriptResolverTrack track = new ScriptResolverTrack();
-                    track.album = mw.getAlbum();
-                    track.albumArtist = mw.getAlbumArtist();
-                    track.track = mw.getTitle();
-                    track.artist = mw.getArtist();
-                    track.duration = mw.getLength() / 1000;
-                    track.albumpos = mw.getTrackNumber();
-                    track.url = mw.getLocation();
-                    track.imagePath = mw.getArtworkURL();
-                    track.lastModified = mw.getLastModified();
-                    tracks.add(track);
-                }
-            }
+        private void processMediaWrappers() {
+            Log.d(TAG, "Processing media items...");
+            final List<ScriptResolverTrack> tracks = new ArrayList<>();
+            // Stream the media table, so that only one MediaWrapper is being held at a time
+            DatabaseHelper.get().forEachMedia(MediaWrapper.TYPE_AUDIO,
+                    new DatabaseHelper.MediaCallback() {
+                        @Override
+                        public void onMedia(MediaWrapper mw) {
+                            ScriptResolverTrack track = new ScriptResolverTrack();
+                            track.album = mw.getAlbum();
+                            track.albumArtist = mw.getAlbumArtist();
+                            track.track = mw.getTitle();
+                            track.artist = mw.getArtist();
+                            track.duration = mw.getLength() / 1000;
+                            track.albumpos = mw.getTrackNumber();
+                            track.url = mw.getLocation();
+                            track.imagePath = mw.getArtworkURL();
+                            track.lastModified = mw.getLastModified();
+                            tracks.add(track);
+                        }
+                    });
             CollectionDb db = CollectionDbManager.get().getCollectionDb(getId());
-            db.wipe();
-            db.addTracks(tracks);
-            Log.d(TAG, "Processed " + mws.size() + " media items. " + tracks.size()
-                    + " tracks have been added to the UserCollection.");
+            db.syncTracks(tracks);
+            Log.d(TAG, "Processed media items. The UserCollection now contains " + tracks.size()
+                    + " tracks.");
         }
     }
 
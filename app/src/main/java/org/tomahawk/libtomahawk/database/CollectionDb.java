@@ -22,22 +22,27 @@ import org.tomahawk.libtomahawk.collection.CollectionManager;
 import org.tomahawk.libtomahawk.collection.DbCollection;
 import org.tomahawk.libtomahawk.resolver.FuzzyIndex;
 import org.tomahawk.libtomahawk.resolver.models.ScriptResolverTrack;
-import org.tomahawk.libtomahawk.utils.StringUtils;
+import org.tomahawk.libtomahawk.utils.StringPool;
 import org.tomahawk.tomahawk_android.utils.PreferenceUtils;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CollectionDb extends SQLiteOpenHelper {
 
@@ -109,10 +114,14 @@ public class CollectionDb extends SQLiteOpenHelper {
 
     public static final String REVISIONHISTORY_TIMESTAMP = "timeStamp";
 
+    private static final int REVISIONHISTORY_MAX_ENTRIES = 10;
+
     protected static final int ACTION_WIPE = 0;
 
     protected static final int ACTION_ADDTRACKS = 1;
 
+    protected static final int ACTION_REMOVETRACKS = 2;
+
     protected static final int TYPE_DEFAULT = 0;
 
     // This type marks an entry that has been explicitly loved.
@@ -195,14 +204,45 @@ public class CollectionDb extends SQLiteOpenHelper {
             + REVISIONHISTORY_REVISION + " TEXT,"
             + REVISIONHISTORY_TIMESTAMP + " INTEGER );";
 
-    private static final int DB_VERSION = 5;
+    private static final String CREATE_INDEX_TRACKS_ARTISTID = "CREATE INDEX IF NOT EXISTS "
+            + TABLE_TRACKS + "_" + TRACKS_ARTISTID + "_idx ON " + TABLE_TRACKS + " ("
+            + TRACKS_ARTISTID + ", " + TRACKS_ALBUMID + ");";
+
+    private static final String CREATE_INDEX_TRACKS_ALBUMID = "CREATE INDEX IF NOT EXISTS "
+            + TABLE_TRACKS + "_" + TRACKS_ALBUMID + "_idx ON " + TABLE_TRACKS + " ("
+            + TRACKS_ALBUMID + ", " + TRACKS_ALBUMPOS + ");";
+
+    private static final String CREATE_INDEX_TRACKS_LASTMODIFIED = "CREATE INDEX IF NOT EXISTS "
+            + TABLE_TRACKS + "_" + TRACKS_LASTMODIFIED + "_idx ON " + TABLE_TRACKS + " ("
+            + TRACKS_LASTMODIFIED + ");";
+
+    private static final String CREATE_INDEX_ALBUMS_ALBUMARTISTID = "CREATE INDEX IF NOT EXISTS "
+            + TABLE_ALBUMS + "_" + ALBUMS_ALBUMARTISTID + "_idx ON " + TABLE_ALBUMS + " ("
+            + ALBUMS_ALBUMARTISTID + ", " + ALBUMS_TYPE + ");";
+
+    // Covering index, so that looking up an artist's albums never has to touch the table itself
+    private static final String CREATE_INDEX_ARTISTALBUMS_ARTISTID = "CREATE INDEX IF NOT EXISTS "
+            + TABLE_ARTISTALBUMS + "_" + ARTISTALBUMS_ARTISTID + "_idx ON " + TABLE_ARTISTALBUMS
+            + " (" + ARTISTALBUMS_ARTISTID + ", " + ARTISTALBUMS_ALBUMID + ");";
+
+    private static final int DB_VERSION = 6;
 
     private static final String DB_FILE_SUFFIX = "_collection.db";
 
     protected final SQLiteDatabase mDb;
 
+    /**
+     * Serializes all writers. Readers don't need to acquire this lock, since they are reading from
+     * the last committed snapshot of the write-ahead log on their own pooled connections.
+     */
+    protected final Object mWriteLock = new Object();
+
     private static final String LAST_COLLECTION_DB_UPDATE_SUFFIX = "_last_collection_db_update";
 
+    private static final int ADDTRACKS_CHUNK_SIZE = 500;
+
+    private static final int SQL_CACHE_SIZE = 50;
+
     public static class WhereInfo {
 
         public String connection;
@@ -221,10 +261,15 @@ public class CollectionDb extends SQLiteOpenHelper {
 
     }
 
+    // Shared by all CollectionDbs, so that a browse revision is never handed out twice
+    private static final AtomicLong sBrowseRevisionCounter = new AtomicLong();
+
     private String mCollectionId;
 
     private FuzzyIndex mFuzzyIndex;
 
+    private volatile long mBrowseRevision = sBrowseRevisionCounter.incrementAndGet();
+
     public CollectionDb(Context context, String collectionId) {
         super(context, collectionId + DB_FILE_SUFFIX, null, DB_VERSION);
 
@@ -235,6 +280,11 @@ public class CollectionDb extends SQLiteOpenHelper {
 
         close();
         mDb = getWritableDatabase();
+        // Lets readers run concurrently to a writer (e.g. browsing the collection while a sync is
+        // in progress). On API 16+ this also gives us a pool of reader connections.
+        mDb.enableWriteAheadLogging();
+        // Make room for the compiled statements of all our query shapes
+        mDb.setMaxSqlCacheSize(SQL_CACHE_SIZE);
 
         mFuzzyIndex = new FuzzyIndex(this);
     }
@@ -243,6 +293,22 @@ public class CollectionDb extends SQLiteOpenHelper {
         return mCollectionId;
     }
 
+    /**
+     * @return an in-memory revision number that changes every time the content of this
+     * CollectionDb has changed. Browse results that have been loaded for a given browse revision
+     * can safely be reused for as long as this method keeps returning the same value.
+     */
+    public long getBrowseRevision() {
+        return mBrowseRevision;
+    }
+
+    /**
+     * Invalidates all browse results that have been loaded for the current browse revision.
+     */
+    protected void bumpBrowseRevision() {
+        mBrowseRevision = sBrowseRevisionCounter.incrementAndGet();
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         Log.d(TAG, "onCreate - CollectionDb '" + db.getPath() + "' with version "
@@ -253,6 +319,7 @@ public class CollectionDb extends SQLiteOpenHelper {
         db.execSQL(CREATE_TABLE_ARTISTALBUMS);
         db.execSQL(CREATE_TABLE_TRACKS);
         db.execSQL(CREATE_TABLE_REVISIONHISTORY);
+        createIndexes(db);
         Log.d(TAG, "onCreate finished - CollectionDb '" + db.getPath() + "' with version "
                 + db.getVersion() + ", objectId: " + this.hashCode());
     }
@@ -272,178 +339,648 @@ public class CollectionDb extends SQLiteOpenHelper {
                 storeNewRevision(db, String.valueOf(lastDbUpdate), ACTION_ADDTRACKS);
             }
         }
+        if (oldVersion < 6) {
+            createIndexes(db);
+        }
+    }
+
+    private static void createIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX_TRACKS_ARTISTID);
+        db.execSQL(CREATE_INDEX_TRACKS_ALBUMID);
+        db.execSQL(CREATE_INDEX_TRACKS_LASTMODIFIED);
+        db.execSQL(CREATE_INDEX_ALBUMS_ALBUMARTISTID);
+        db.execSQL(CREATE_INDEX_ARTISTALBUMS_ARTISTID);
+    }
+
+    /**
+     * Adds the given tracks to this CollectionDb. For large batches that are being streamed in,
+     * use {@link #beginAddTracks(CompilationInfo, AddTracksProgressListener)} instead.
+     */
+    public void addTracks(List<ScriptResolverTrack> tracks) {
+        CompilationInfo info = new CompilationInfo();
+        for (ScriptResolverTrack track : tracks) {
+            info.add(track);
+        }
+        TrackWriter writer = beginAddTracks(info, null);
+        for (ScriptResolverTrack track : tracks) {
+            writer.add(track);
+        }
+        writer.finish();
     }
 
-    public synchronized void addTracks(List<ScriptResolverTrack> tracks) {
+    /**
+     * Makes the tracks stored in this CollectionDb match the given complete set of tracks, without
+     * wiping the whole CollectionDb. Tracks are compared by url and lastModified timestamp. Since
+     * the compilation status of an album depends on all of its tracks, every album that contains
+     * a new, changed or removed track is being stored again as a whole. The removal and the
+     * re-add are committed in one transaction under a single new revision. If nothing has changed
+     * at all, the revision of this CollectionDb stays the same.
+     *
+     * @param tracks all tracks that this CollectionDb should contain
+     */
+    public void syncTracks(List<ScriptResolverTrack> tracks) {
         long time = System.currentTimeMillis();
+        // Make sure that the FuzzyIndex is up to date, before we start to update it incrementally
+        mFuzzyIndex.ensureIndex();
 
-        // Check if we want to store the album as a compilation album (with artist "Various Artists")
-        Map<String, Set<String>> albumArtists = new HashMap<>();
+        CompilationInfo info = new CompilationInfo();
+        Map<String, ScriptResolverTrack> scannedTracks = new HashMap<>();
+        Set<String> scannedAlbumArtists = new HashSet<>();
         for (ScriptResolverTrack track : tracks) {
-            if (track.artist == null) {
-                track.artist = "";
+            info.add(track);
+            scannedTracks.put(track.url, track);
+            scannedAlbumArtists.add(
+                    concatKeys(track.albumArtist, track.albumArtistDisambiguation));
+        }
+
+        // Scanned tracks are grouped by album and albumArtist, just like in the CompilationInfo.
+        // Stored tracks are grouped by the album they have been stored in. Both have to be
+        // expanded until every stored track of a changed album also marks its scanned group as
+        // changed and vice versa, otherwise we'd end up with duplicated or missing tracks.
+        Map<String, StoredTrack> storedTracks = getStoredTracks();
+        Set<String> changedAlbumKeys = new HashSet<>();
+        Set<Long> changedAlbumIds = new HashSet<>();
+        for (ScriptResolverTrack track : tracks) {
+            StoredTrack storedTrack = storedTracks.get(track.url);
+            if (storedTrack == null || storedTrack.lastModified != track.lastModified) {
+                changedAlbumKeys.add(CompilationInfo.getAlbumKey(track));
+                if (storedTrack != null) {
+                    changedAlbumIds.add(storedTrack.albumId);
+                }
             }
-            if (track.artistDisambiguation == null) {
-                track.artistDisambiguation = "";
+        }
+        for (Map.Entry<String, StoredTrack> entry : storedTracks.entrySet()) {
+            if (!scannedTracks.containsKey(entry.getKey())) {
+                changedAlbumIds.add(entry.getValue().albumId);
             }
-            if (track.album == null) {
-                track.album = "";
+        }
+        boolean expanded = true;
+        while (expanded) {
+            expanded = false;
+            for (Map.Entry<String, StoredTrack> entry : storedTracks.entrySet()) {
+                ScriptResolverTrack track = scannedTracks.get(entry.getKey());
+                if (track != null) {
+                    String albumKey = CompilationInfo.getAlbumKey(track);
+                    long albumId = entry.getValue().albumId;
+                    if (changedAlbumIds.contains(albumId)) {
+                        expanded |= changedAlbumKeys.add(albumKey);
+                    } else if (changedAlbumKeys.contains(albumKey)) {
+                        expanded |= changedAlbumIds.add(albumId);
+                    }
+                }
+            }
+        }
+        List<Long> removedTrackIds = new ArrayList<>();
+        for (StoredTrack storedTrack : storedTracks.values()) {
+            if (changedAlbumIds.contains(storedTrack.albumId)) {
+                removedTrackIds.add(storedTrack.id);
+            }
+        }
+        List<ScriptResolverTrack> addedTracks = new ArrayList<>();
+        for (ScriptResolverTrack track : tracks) {
+            if (changedAlbumKeys.contains(CompilationInfo.getAlbumKey(track))) {
+                addedTracks.add(track);
+            }
+        }
+        Log.d(TAG, "syncTracks - " + tracks.size() + " tracks, " + storedTracks.size()
+                + " stored, " + removedTrackIds.size() + " to remove, " + addedTracks.size()
+                + " to add, diffing took " + (System.currentTimeMillis() - time) + "ms");
+
+        if (!removedTrackIds.isEmpty() || !addedTracks.isEmpty()) {
+            long[] addedTrackIds = new long[addedTracks.size()];
+            synchronized (mWriteLock) {
+                mDb.beginTransaction();
+                try {
+                    if (!removedTrackIds.isEmpty()) {
+                        removeTracks(removedTrackIds, scannedAlbumArtists);
+                    }
+                    if (!addedTracks.isEmpty()) {
+                        TrackInserter inserter = new TrackInserter();
+                        try {
+                            for (int i = 0; i < addedTracks.size(); i++) {
+                                ScriptResolverTrack track = addedTracks.get(i);
+                                addedTrackIds[i] =
+                                        inserter.insert(track, info.isCompilation(track));
+                            }
+                            inserter.updateLastModifieds();
+                        } finally {
+                            inserter.close();
+                        }
+                    }
+                    mDb.setTransactionSuccessful();
+                } finally {
+                    mDb.endTransaction();
+                }
+                storeNewRevision(String.valueOf(System.currentTimeMillis()),
+                        addedTracks.isEmpty() ? ACTION_REMOVETRACKS : ACTION_ADDTRACKS);
+            }
+            // This has to happen after storing the new revision, otherwise the FuzzyIndex would
+            // consider itself outdated
+            if (!removedTrackIds.isEmpty()) {
+                mFuzzyIndex.removeFromIndex(removedTrackIds);
+            }
+            if (!addedTracks.isEmpty()) {
+                mFuzzyIndex.addToIndex(addedTracks, addedTrackIds);
+            }
+        }
+        ((DbCollection) CollectionManager.get().getCollection(mCollectionId))
+                .setInitialized(true);
+        Log.d(TAG, "syncTracks - finished in " + (System.currentTimeMillis() - time) + "ms");
+    }
+
+    private static class StoredTrack {
+
+        long id;
+
+        long lastModified;
+
+        long albumId;
+    }
+
+    /**
+     * @return all stored tracks that have a url, mapped to their url
+     */
+    private Map<String, StoredTrack> getStoredTracks() {
+        Map<String, StoredTrack> storedTracks = new HashMap<>();
+        Cursor cursor = mDb.query(TABLE_TRACKS,
+                new String[]{ID, TRACKS_URL, TRACKS_LASTMODIFIED, TRACKS_ALBUMID},
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                String url = cursor.getString(1);
+                if (url != null) {
+                    StoredTrack storedTrack = new StoredTrack();
+                    storedTrack.id = cursor.getLong(0);
+                    storedTrack.lastModified = cursor.getLong(2);
+                    storedTrack.albumId = cursor.getLong(3);
+                    storedTracks.put(url, storedTrack);
+                }
             }
-            if (track.albumArtist == null) {
-                track.albumArtist = "";
+        } finally {
+            cursor.close();
+        }
+        return storedTracks;
+    }
+
+    /**
+     * Removes the tracks with the given ids and afterwards every artist, album and album artist
+     * that isn't referenced by any track anymore. Loved artists and albums are being kept.
+     */
+    private void removeTracks(List<Long> trackIds, Set<String> albumArtists) {
+        mDb.beginTransaction();
+        try {
+            SQLiteStatement deleteTrack = mDb.compileStatement(
+                    "DELETE FROM " + TABLE_TRACKS + " WHERE " + ID + " = ?");
+            for (Long trackId : trackIds) {
+                deleteTrack.bindLong(1, trackId);
+                deleteTrack.executeUpdateDelete();
             }
-            if (track.albumArtistDisambiguation == null) {
-                track.albumArtistDisambiguation = "";
+            deleteTrack.close();
+
+            mDb.execSQL("DELETE FROM " + TABLE_ARTISTALBUMS + " WHERE NOT EXISTS (SELECT 1 FROM "
+                    + TABLE_TRACKS + " WHERE " + TABLE_TRACKS + "." + TRACKS_ARTISTID + " = "
+                    + TABLE_ARTISTALBUMS + "." + ARTISTALBUMS_ARTISTID + " AND "
+                    + TABLE_TRACKS + "." + TRACKS_ALBUMID + " = "
+                    + TABLE_ARTISTALBUMS + "." + ARTISTALBUMS_ALBUMID + ")");
+            mDb.execSQL("DELETE FROM " + TABLE_ALBUMS + " WHERE " + ALBUMS_TYPE + " = "
+                    + TYPE_DEFAULT + " AND " + ID + " NOT IN (SELECT " + TRACKS_ALBUMID
+                    + " FROM " + TABLE_TRACKS + ")");
+            mDb.execSQL("DELETE FROM " + TABLE_ARTISTS + " WHERE " + ARTISTS_TYPE + " = "
+                    + TYPE_DEFAULT + " AND " + ID + " NOT IN (SELECT " + TRACKS_ARTISTID
+                    + " FROM " + TABLE_TRACKS + ") AND " + ID + " NOT IN (SELECT "
+                    + ALBUMS_ALBUMARTISTID + " FROM " + TABLE_ALBUMS + ")");
+
+            // Album artists aren't referenced by id, so we compare them by name instead
+            List<Long> removedAlbumArtistIds = new ArrayList<>();
+            Cursor cursor = mDb.query(TABLE_ALBUMARTISTS, new String[]{ID,
+                            ALBUMARTISTS_ALBUMARTIST, ALBUMARTISTS_ALBUMARTISTDISAMBIGUATION},
+                    null, null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    if (!albumArtists.contains(
+                            concatKeys(cursor.getString(1), cursor.getString(2)))) {
+                        removedAlbumArtistIds.add(cursor.getLong(0));
+                    }
+                }
+            } finally {
+                cursor.close();
             }
-            if (track.track == null) {
-                track.track = "";
+            SQLiteStatement deleteAlbumArtist = mDb.compileStatement(
+                    "DELETE FROM " + TABLE_ALBUMARTISTS + " WHERE " + ID + " = ?");
+            for (Long albumArtistId : removedAlbumArtistIds) {
+                deleteAlbumArtist.bindLong(1, albumArtistId);
+                deleteAlbumArtist.executeUpdateDelete();
             }
-            Set<String> artists = albumArtists.get(track.album + "♠" + track.albumArtist);
+            deleteAlbumArtist.close();
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    /**
+     * Starts adding a batch of tracks to this CollectionDb. Tracks are committed in chunks of
+     * {@link #ADDTRACKS_CHUNK_SIZE}, so only one chunk has to be held in memory at a time and
+     * readers don't have to wait for the whole batch to be stored.
+     *
+     * @param info     the {@link CompilationInfo}, which has to be fed with every track of the
+     *                 batch beforehand
+     * @param listener optional {@link AddTracksProgressListener} which is being notified after
+     *                 every committed chunk
+     * @return the {@link TrackWriter} the tracks should be added to. {@link TrackWriter#finish()}
+     * has to be called once all tracks have been added, {@link TrackWriter#abort()} if adding the
+     * tracks has failed.
+     */
+    public TrackWriter beginAddTracks(CompilationInfo info, AddTracksProgressListener listener) {
+        // The FuzzyIndex is being updated incrementally while adding tracks, so we have to make
+        // sure that it's up to date before we start
+        mFuzzyIndex.ensureIndex();
+        synchronized (mWriteLock) {
+            return new TrackWriter(info, listener);
+        }
+    }
+
+    public interface AddTracksProgressListener {
+
+        void onProgress(int addedCount, int totalCount);
+    }
+
+    /**
+     * Collects the information about a whole batch of tracks, that is needed before the first
+     * track of that batch can be stored. Namely whether or not we want to store an album as a
+     * compilation album (with artist "Various Artists").
+     */
+    public static class CompilationInfo {
+
+        private final Map<String, Set<String>> mAlbumArtists = new HashMap<>();
+
+        private int mTrackCount;
+
+        public void add(ScriptResolverTrack track) {
+            normalize(track);
+            add(track.album, track.albumArtist, track.artist);
+        }
+
+        public void add(String album, String albumArtist, String artist) {
+            album = StringPool.internNonNull(album);
+            albumArtist = StringPool.internNonNull(albumArtist);
+            String key = getAlbumKey(album, albumArtist);
+            Set<String> artists = mAlbumArtists.get(key);
             if (artists == null) {
                 artists = new HashSet<>();
-                albumArtists.put(track.album + "♠" + track.albumArtist, artists);
+                mAlbumArtists.put(key, artists);
             }
             if (artists.size() < 2) {
-                artists.add(track.artist);
+                artists.add(StringPool.internNonNull(artist));
             }
+            mTrackCount++;
         }
 
-        Map<String, Long> artistLastModifiedMap = new HashMap<>();
-        // First we insert all artists and albumArtists
-        mDb.beginTransaction();
-        for (ScriptResolverTrack track : tracks) {
-            if (albumArtists.get(track.album + "♠" + track.albumArtist).size() > 1) {
-                ContentValues values = new ContentValues();
-                values.put(ARTISTS_ARTIST, Artist.COMPILATION_ARTIST.getName());
-                values.put(ARTISTS_ARTISTDISAMBIGUATION, "");
-                String artistKey = Artist.COMPILATION_ARTIST.getName() + "♠" + "";
-                Long lastModified = artistLastModifiedMap.get(artistKey);
-                if (lastModified == null || lastModified < track.lastModified) {
-                    artistLastModifiedMap.put(artistKey, track.lastModified);
-                    lastModified = track.lastModified;
+        public boolean isCompilation(ScriptResolverTrack track) {
+            Set<String> artists = mAlbumArtists.get(getAlbumKey(track));
+            return artists != null && artists.size() > 1;
+        }
+
+        private static String getAlbumKey(ScriptResolverTrack track) {
+            return getAlbumKey(track.album, track.albumArtist);
+        }
+
+        private static String getAlbumKey(String album, String albumArtist) {
+            return album + "♠" + albumArtist;
+        }
+
+        public int getTrackCount() {
+            return mTrackCount;
+        }
+    }
+
+    /**
+     * Stores tracks in chunks. Each chunk is being committed in its own transaction and added to
+     * the {@link FuzzyIndex} right afterwards.
+     */
+    public class TrackWriter {
+
+        private final CompilationInfo mCompilationInfo;
+
+        private final AddTracksProgressListener mListener;
+
+        private final TrackInserter mInserter = new TrackInserter();
+
+        private final List<ScriptResolverTrack> mChunk = new ArrayList<>();
+
+        private final long mStartTime = System.currentTimeMillis();
+
+        private int mAddedCount;
+
+        private boolean mClosed;
+
+        private TrackWriter(CompilationInfo info, AddTracksProgressListener listener) {
+            mCompilationInfo = info;
+            mListener = listener;
+        }
+
+        public void add(ScriptResolverTrack track) {
+            normalize(track);
+            mChunk.add(track);
+            if (mChunk.size() >= ADDTRACKS_CHUNK_SIZE) {
+                flushChunk(false);
+            }
+        }
+
+        public void finish() {
+            if (mClosed) {
+                return;
+            }
+            flushChunk(true);
+            mClosed = true;
+            synchronized (mWriteLock) {
+                mInserter.close();
+            }
+            Log.d(TAG, "Added " + mAddedCount + " tracks in "
+                    + (System.currentTimeMillis() - mStartTime) + "ms");
+            ((DbCollection) CollectionManager.get().getCollection(mCollectionId))
+                    .setInitialized(true);
+        }
+
+        /**
+         * Stops adding tracks and discards the chunk that hasn't been committed yet. The chunks
+         * that have already been committed can't be rolled back, so they are being kept as a
+         * partial import under a new revision. Does nothing if this TrackWriter has already been
+         * finished.
+         */
+        public void abort() {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            mChunk.clear();
+            synchronized (mWriteLock) {
+                mInserter.close();
+                if (mAddedCount > 0) {
+                    storeNewRevision(String.valueOf(System.currentTimeMillis()), ACTION_ADDTRACKS);
                 }
-                values.put(ARTISTS_LASTMODIFIED, lastModified);
-                values.put(ARTISTS_TYPE, TYPE_DEFAULT);
-                mDb.insert(TABLE_ARTISTS, null, values);
             }
-            ContentValues values = new ContentValues();
-            values.put(ARTISTS_ARTIST, track.artist);
-            values.put(ARTISTS_ARTISTDISAMBIGUATION, track.artistDisambiguation);
-            String artistKey = track.artist + "♠" + track.artistDisambiguation;
-            Long lastModified = artistLastModifiedMap.get(artistKey);
-            if (lastModified == null || lastModified < track.lastModified) {
-                artistLastModifiedMap.put(artistKey, track.lastModified);
-                lastModified = track.lastModified;
-            }
-            values.put(ARTISTS_LASTMODIFIED, lastModified);
-            values.put(ARTISTS_TYPE, TYPE_DEFAULT);
-            mDb.insert(TABLE_ARTISTS, null, values);
-            values = new ContentValues();
-            values.put(ALBUMARTISTS_ALBUMARTIST, track.albumArtist);
-            values.put(ALBUMARTISTS_ALBUMARTISTDISAMBIGUATION, track.albumArtistDisambiguation);
-            values.put(ALBUMARTISTS_LASTMODIFIED, lastModified);
-            mDb.insert(TABLE_ALBUMARTISTS, null, values);
-        }
-        mDb.setTransactionSuccessful();
-        mDb.endTransaction();
-
-        Cursor cursor = mDb.query(TABLE_ARTISTS,
-                new String[]{ID, ARTISTS_ARTIST, ARTISTS_ARTISTDISAMBIGUATION},
-                null, null, null, null, null);
-        Map<String, Integer> cachedArtists = cursorToMap(cursor);
+            Log.d(TAG, "Aborted adding tracks after " + mAddedCount + " tracks in "
+                    + (System.currentTimeMillis() - mStartTime) + "ms");
+            if (mAddedCount > 0) {
+                ((DbCollection) CollectionManager.get().getCollection(mCollectionId))
+                        .setInitialized(true);
+            }
+        }
 
-        Map<String, Long> albumLastModifiedMap = new HashMap<>();
-        mDb.beginTransaction();
-        for (ScriptResolverTrack track : tracks) {
-            ContentValues values = new ContentValues();
-            values.put(ALBUMS_ALBUM, track.album);
-            int albumArtistId;
-            if (albumArtists.get(track.album + "♠" + track.albumArtist).size() == 1) {
-                albumArtistId = cachedArtists.get(
-                        concatKeys(track.artist, track.artistDisambiguation));
-            } else {
-                albumArtistId = cachedArtists.get(
-                        concatKeys(Artist.COMPILATION_ARTIST.getName(), ""));
-            }
-            values.put(ALBUMS_ALBUMARTISTID, albumArtistId);
-            values.put(ALBUMS_IMAGEPATH, track.imagePath);
-            String artistKey = track.album + "♠" + albumArtistId;
-            Long lastModified = albumLastModifiedMap.get(artistKey);
-            if (lastModified == null || lastModified < track.lastModified) {
-                albumLastModifiedMap.put(artistKey, track.lastModified);
-                lastModified = track.lastModified;
-            }
-            values.put(ALBUMS_LASTMODIFIED, lastModified);
-            values.put(ALBUMS_TYPE, TYPE_DEFAULT);
-            mDb.insert(TABLE_ALBUMS, null, values);
-        }
-        mDb.setTransactionSuccessful();
-        mDb.endTransaction();
-
-        cursor = mDb.query(TABLE_ALBUMS,
-                new String[]{ID, ALBUMS_ALBUM, ALBUMS_ALBUMARTISTID},
-                null, null, null, null, null);
-        Map<String, Integer> cachedAlbums = cursorToMap(cursor);
+        private void flushChunk(boolean isLastChunk) {
+            long[] trackIds = new long[mChunk.size()];
+            synchronized (mWriteLock) {
+                mDb.beginTransaction();
+                try {
+                    for (int i = 0; i < mChunk.size(); i++) {
+                        ScriptResolverTrack track = mChunk.get(i);
+                        trackIds[i] =
+                                mInserter.insert(track, mCompilationInfo.isCompilation(track));
+                    }
+                    mInserter.updateLastModifieds();
+                    mDb.setTransactionSuccessful();
+                } finally {
+                    mDb.endTransaction();
+                }
+                if (isLastChunk && mAddedCount + mChunk.size() > 0) {
+                    storeNewRevision(String.valueOf(System.currentTimeMillis()), ACTION_ADDTRACKS);
+                }
+            }
+            // This has to happen after storing the new revision, otherwise the FuzzyIndex would
+            // consider itself outdated
+            mFuzzyIndex.addToIndex(mChunk, trackIds);
+            mAddedCount += mChunk.size();
+            mChunk.clear();
+            if (mListener != null) {
+                mListener.onProgress(mAddedCount, mCompilationInfo.getTrackCount());
+            }
+        }
+    }
 
-        mDb.beginTransaction();
-        for (ScriptResolverTrack track : tracks) {
-            ContentValues values = new ContentValues();
-            int albumArtistId;
-            if (albumArtists.get(track.album + "♠" + track.albumArtist).size() == 1) {
-                albumArtistId = cachedArtists.get(
-                        concatKeys(track.artist, track.artistDisambiguation));
-            } else {
-                albumArtistId = cachedArtists.get(
-                        concatKeys(Artist.COMPILATION_ARTIST.getName(), ""));
-            }
-            int artistId = cachedArtists.get(concatKeys(track.artist, track.artistDisambiguation));
-            int albumId = cachedAlbums.get(concatKeys(track.album, albumArtistId));
-            values.put(ARTISTALBUMS_ARTISTID, artistId);
-            values.put(ARTISTALBUMS_ALBUMID, albumId);
-            mDb.insert(TABLE_ARTISTALBUMS, null, values);
-            values = new ContentValues();
-            values.put(TRACKS_TRACK, track.track);
-            values.put(TRACKS_ARTISTID, artistId);
-            values.put(TRACKS_ALBUMID, albumId);
-            values.put(TRACKS_URL, track.url);
-            values.put(TRACKS_DURATION, (int) track.duration);
-            values.put(TRACKS_LINKURL, track.linkUrl);
-            values.put(TRACKS_ALBUMPOS, track.albumpos);
-            values.put(TRACKS_LASTMODIFIED, track.lastModified);
-            mDb.insert(TABLE_TRACKS, null, values);
-        }
-        mDb.setTransactionSuccessful();
-        mDb.endTransaction();
-
-        Log.d(TAG, "Added " + tracks.size() + " tracks in " + (System.currentTimeMillis() - time)
-                + "ms");
-        if (tracks.size() > 0) {
-            storeNewRevision(String.valueOf(System.currentTimeMillis()), ACTION_ADDTRACKS);
+    private static void normalize(ScriptResolverTrack track) {
+        // Artist and album names repeat a lot, so we make sure to only hold one instance each
+        track.artist = StringPool.internNonNull(track.artist);
+        track.artistDisambiguation = StringPool.internNonNull(track.artistDisambiguation);
+        track.album = StringPool.internNonNull(track.album);
+        track.albumArtist = StringPool.internNonNull(track.albumArtist);
+        track.albumArtistDisambiguation = StringPool.internNonNull(track.albumArtistDisambiguation);
+        if (track.track == null) {
+            track.track = "";
         }
-        mFuzzyIndex.ensureIndex();
-        ((DbCollection) CollectionManager.get().getCollection(mCollectionId)).setInitialized(true);
     }
 
-    private static Map<String, Integer> cursorToMap(Cursor cursor) {
-        Map<String, Integer> map = new HashMap<>();
-        try {
-            cursor.moveToFirst();
-            if (!cursor.isAfterLast()) {
-                do {
-                    map.put(concatKeys(cursor.getString(1), cursor.getString(2)),
-                            cursor.getInt(0));
-                } while (cursor.moveToNext());
+    /**
+     * Inserts tracks together with their artists, albumArtists and albums through compiled
+     * statements. The ids of all artists and albums that have been inserted or looked up are kept
+     * in memory, so that no table has to be re-read in order to resolve them. Must be used inside
+     * of a transaction.
+     */
+    private class TrackInserter {
+
+        private final SQLiteStatement mInsertArtist = mDb.compileStatement(
+                "INSERT INTO " + TABLE_ARTISTS + " (" + ARTISTS_ARTIST + ", "
+                        + ARTISTS_ARTISTDISAMBIGUATION + ", " + ARTISTS_LASTMODIFIED + ", "
+                        + ARTISTS_TYPE + ") VALUES (?, ?, ?, ?)");
+
+        private final SQLiteStatement mSelectArtistId = mDb.compileStatement(
+                "SELECT " + ID + " FROM " + TABLE_ARTISTS + " WHERE " + ARTISTS_ARTIST + " = ? AND "
+                        + ARTISTS_ARTISTDISAMBIGUATION + " = ? AND " + ARTISTS_TYPE + " = ?");
+
+        private final SQLiteStatement mUpdateArtistLastModified = mDb.compileStatement(
+                "UPDATE " + TABLE_ARTISTS + " SET " + ARTISTS_LASTMODIFIED + " = ? WHERE "
+                        + ID + " = ? AND " + ARTISTS_LASTMODIFIED + " < ?");
+
+        private final SQLiteStatement mInsertAlbumArtist = mDb.compileStatement(
+                "INSERT INTO " + TABLE_ALBUMARTISTS + " (" + ALBUMARTISTS_ALBUMARTIST + ", "
+                        + ALBUMARTISTS_ALBUMARTISTDISAMBIGUATION + ", "
+                        + ALBUMARTISTS_LASTMODIFIED + ") VALUES (?, ?, ?)");
+
+        private final SQLiteStatement mInsertAlbum = mDb.compileStatement(
+                "INSERT INTO " + TABLE_ALBUMS + " (" + ALBUMS_ALBUM + ", " + ALBUMS_ALBUMARTISTID
+                        + ", " + ALBUMS_IMAGEPATH + ", " + ALBUMS_LASTMODIFIED + ", "
+                        + ALBUMS_TYPE + ") VALUES (?, ?, ?, ?, ?)");
+
+        private final SQLiteStatement mSelectAlbumId = mDb.compileStatement(
+                "SELECT " + ID + " FROM " + TABLE_ALBUMS + " WHERE " + ALBUMS_ALBUM + " = ? AND "
+                        + ALBUMS_ALBUMARTISTID + " = ? AND " + ALBUMS_TYPE + " = ?");
+
+        private final SQLiteStatement mUpdateAlbumLastModified = mDb.compileStatement(
+                "UPDATE " + TABLE_ALBUMS + " SET " + ALBUMS_LASTMODIFIED + " = ? WHERE "
+                        + ID + " = ? AND " + ALBUMS_LASTMODIFIED + " < ?");
+
+        private final SQLiteStatement mInsertArtistAlbum = mDb.compileStatement(
+                "INSERT INTO " + TABLE_ARTISTALBUMS + " (" + ARTISTALBUMS_ARTISTID + ", "
+                        + ARTISTALBUMS_ALBUMID + ") VALUES (?, ?)");
+
+        private final SQLiteStatement mInsertTrack = mDb.compileStatement(
+                "INSERT INTO " + TABLE_TRACKS + " (" + TRACKS_TRACK + ", " + TRACKS_ARTISTID + ", "
+                        + TRACKS_ALBUMID + ", " + TRACKS_URL + ", " + TRACKS_DURATION + ", "
+                        + TRACKS_LINKURL + ", " + TRACKS_ALBUMPOS + ", " + TRACKS_LASTMODIFIED
+                        + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+
+        private final Map<String, Long> mArtistIds = new HashMap<>();
+
+        private final Map<String, Long> mAlbumIds = new HashMap<>();
+
+        private final Set<String> mInsertedAlbumArtists = new HashSet<>();
+
+        private final Set<String> mInsertedArtistAlbums = new HashSet<>();
+
+        // The most recent lastModified timestamp we've seen for each artist/album id
+        private final Map<Long, Long> mArtistLastModifieds = new HashMap<>();
+
+        private final Map<Long, Long> mAlbumLastModifieds = new HashMap<>();
+
+        private final Set<Long> mOutdatedArtistIds = new HashSet<>();
+
+        private final Set<Long> mOutdatedAlbumIds = new HashSet<>();
+
+        /**
+         * @return the id of the inserted track or -1 if the track has already been stored before
+         */
+        public long insert(ScriptResolverTrack track, boolean isCompilation) {
+            String artistKey = concatKeys(track.artist, track.artistDisambiguation);
+            long artistId = getArtistId(artistKey, track.artist, track.artistDisambiguation,
+                    track.lastModified);
+
+            long albumArtistId;
+            if (isCompilation) {
+                albumArtistId = getArtistId(concatKeys(Artist.COMPILATION_ARTIST.getName(), ""),
+                        Artist.COMPILATION_ARTIST.getName(), "", track.lastModified);
+            } else {
+                albumArtistId = artistId;
             }
-        } finally {
-            if (cursor != null) {
-                cursor.close();
+
+            if (mInsertedAlbumArtists.add(
+                    concatKeys(track.albumArtist, track.albumArtistDisambiguation))) {
+                mInsertAlbumArtist.bindString(1, track.albumArtist);
+                mInsertAlbumArtist.bindString(2, track.albumArtistDisambiguation);
+                mInsertAlbumArtist.bindLong(3, track.lastModified);
+                mInsertAlbumArtist.executeInsert();
             }
+
+            long albumId = getAlbumId(track, albumArtistId);
+
+            if (mInsertedArtistAlbums.add(concatKeys(artistId, albumId))) {
+                mInsertArtistAlbum.bindLong(1, artistId);
+                mInsertArtistAlbum.bindLong(2, albumId);
+                mInsertArtistAlbum.executeInsert();
+            }
+
+            mInsertTrack.bindString(1, track.track);
+            mInsertTrack.bindLong(2, artistId);
+            mInsertTrack.bindLong(3, albumId);
+            bindStringOrNull(mInsertTrack, 4, track.url);
+            mInsertTrack.bindLong(5, (int) track.duration);
+            bindStringOrNull(mInsertTrack, 6, track.linkUrl);
+            mInsertTrack.bindLong(7, track.albumpos);
+            mInsertTrack.bindLong(8, track.lastModified);
+            return mInsertTrack.executeInsert();
+        }
+
+        private long getArtistId(String artistKey, String artist, String artistDisambiguation,
+                long lastModified) {
+            Long artistId = mArtistIds.get(artistKey);
+            if (artistId == null) {
+                mInsertArtist.bindString(1, artist);
+                mInsertArtist.bindString(2, artistDisambiguation);
+                mInsertArtist.bindLong(3, lastModified);
+                mInsertArtist.bindLong(4, TYPE_DEFAULT);
+                artistId = mInsertArtist.executeInsert();
+                if (artistId < 0) {
+                    // The artist has already been stored before
+                    mSelectArtistId.bindString(1, artist);
+                    mSelectArtistId.bindString(2, artistDisambiguation);
+                    mSelectArtistId.bindLong(3, TYPE_DEFAULT);
+                    artistId = mSelectArtistId.simpleQueryForLong();
+                    mOutdatedArtistIds.add(artistId);
+                }
+                mArtistIds.put(artistKey, artistId);
+                mArtistLastModifieds.put(artistId, lastModified);
+            } else if (mArtistLastModifieds.get(artistId) < lastModified) {
+                mArtistLastModifieds.put(artistId, lastModified);
+                mOutdatedArtistIds.add(artistId);
+            }
+            return artistId;
+        }
+
+        private long getAlbumId(ScriptResolverTrack track, long albumArtistId) {
+            String albumKey = concatKeys(track.album, albumArtistId);
+            Long albumId = mAlbumIds.get(albumKey);
+            if (albumId == null) {
+                mInsertAlbum.bindString(1, track.album);
+                mInsertAlbum.bindLong(2, albumArtistId);
+                bindStringOrNull(mInsertAlbum, 3, track.imagePath);
+                mInsertAlbum.bindLong(4, track.lastModified);
+                mInsertAlbum.bindLong(5, TYPE_DEFAULT);
+                albumId = mInsertAlbum.executeInsert();
+                if (albumId < 0) {
+                    // The album has already been stored before
+                    mSelectAlbumId.bindString(1, track.album);
+                    mSelectAlbumId.bindLong(2, albumArtistId);
+                    mSelectAlbumId.bindLong(3, TYPE_DEFAULT);
+                    albumId = mSelectAlbumId.simpleQueryForLong();
+                    mOutdatedAlbumIds.add(albumId);
+                }
+                mAlbumIds.put(albumKey, albumId);
+                mAlbumLastModifieds.put(albumId, track.lastModified);
+            } else if (mAlbumLastModifieds.get(albumId) < track.lastModified) {
+                mAlbumLastModifieds.put(albumId, track.lastModified);
+                mOutdatedAlbumIds.add(albumId);
+            }
+            return albumId;
+        }
+
+        /**
+         * Every artist and album is only inserted once, so we have to bump the lastModified
+         * timestamp of those that have been encountered again with a more recent timestamp.
+         */
+        public void updateLastModifieds() {
+            for (Long artistId : mOutdatedArtistIds) {
+                long lastModified = mArtistLastModifieds.get(artistId);
+                mUpdateArtistLastModified.bindLong(1, lastModified);
+                mUpdateArtistLastModified.bindLong(2, artistId);
+                mUpdateArtistLastModified.bindLong(3, lastModified);
+                mUpdateArtistLastModified.executeUpdateDelete();
+            }
+            mOutdatedArtistIds.clear();
+            for (Long albumId : mOutdatedAlbumIds) {
+                long lastModified = mAlbumLastModifieds.get(albumId);
+                mUpdateAlbumLastModified.bindLong(1, lastModified);
+                mUpdateAlbumLastModified.bindLong(2, albumId);
+                mUpdateAlbumLastModified.bindLong(3, lastModified);
+                mUpdateAlbumLastModified.executeUpdateDelete();
+            }
+            mOutdatedAlbumIds.clear();
+        }
+
+        public void close() {
+            mInsertArtist.close();
+            mSelectArtistId.close();
+            mUpdateArtistLastModified.close();
+            mInsertAlbumArtist.close();
+            mInsertAlbum.close();
+            mSelectAlbumId.close();
+            mUpdateAlbumLastModified.close();
+            mInsertArtistAlbum.close();
+            mInsertTrack.close();
         }
-        return map;
     }
 
-    public synchronized void wipe() {
-        wipe(mDb);
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+
+    public void wipe() {
+        synchronized (mWriteLock) {
+            wipe(mDb);
+            bumpBrowseRevision();
+        }
     }
 
     private void wipe(SQLiteDatabase db) {
@@ -457,20 +994,22 @@ public class CollectionDb extends SQLiteOpenHelper {
         db.execSQL(CREATE_TABLE_ARTISTALBUMS);
         db.execSQL("DROP TABLE IF EXISTS `" + TABLE_TRACKS + "`;");
         db.execSQL(CREATE_TABLE_TRACKS);
+        // Dropping the tables also dropped their indexes
+        createIndexes(db);
         storeNewRevision(db, String.valueOf(System.currentTimeMillis()), ACTION_WIPE);
     }
 
     /**
      * Convenience method. Uses a default set of fields.
      */
-    public synchronized Cursor tracks(WhereInfo where, String[] orderBy) {
+    public Cursor tracks(WhereInfo where, String[] orderBy) {
         String[] fields = new String[]{ARTISTS_ARTIST, ARTISTS_ARTISTDISAMBIGUATION, ALBUMS_ALBUM,
                 TRACKS_TRACK, TRACKS_DURATION, TRACKS_URL, TRACKS_LINKURL, TRACKS_ALBUMPOS,
                 TRACKS_LASTMODIFIED, TRACKS_ALBUMID};
         return tracks(where, orderBy, fields);
     }
 
-    public synchronized Cursor tracks(WhereInfo where, String[] orderBy, String[] fields) {
+    public Cursor tracks(WhereInfo where, String[] orderBy, String[] fields) {
         List<JoinInfo> joinInfos = new ArrayList<>();
         JoinInfo joinInfo = new JoinInfo();
         joinInfo.table = TABLE_ARTISTS;
@@ -485,7 +1024,7 @@ public class CollectionDb extends SQLiteOpenHelper {
                 TRACKS_LASTMODIFIED, false);
     }
 
-    public synchronized long tracksCurrentRevision() {
+    public long tracksCurrentRevision() {
         String[] fields = new String[]{TRACKS_LASTMODIFIED};
         long currentRevision = -1;
         Cursor cursor = null;
@@ -506,7 +1045,7 @@ public class CollectionDb extends SQLiteOpenHelper {
         return currentRevision;
     }
 
-    public synchronized Cursor albums(String[] orderBy) {
+    public Cursor albums(String[] orderBy) {
         String[] fields = new String[]{ALBUMS_ALBUM, ARTISTS_ARTIST, ARTISTS_ARTISTDISAMBIGUATION,
                 ALBUMS_IMAGEPATH, ALBUMS_LASTMODIFIED};
         List<JoinInfo> joinInfos = new ArrayList<>();
@@ -524,7 +1063,7 @@ public class CollectionDb extends SQLiteOpenHelper {
                 ALBUMS_LASTMODIFIED, false);
     }
 
-    public synchronized Cursor artists(String[] orderBy) {
+    public Cursor artists(String[] orderBy) {
         String[] fields = new String[]{ARTISTS_ARTIST, ARTISTS_ARTISTDISAMBIGUATION,
                 ARTISTS_LASTMODIFIED};
         JoinInfo joinInfo = new JoinInfo();
@@ -538,7 +1077,7 @@ public class CollectionDb extends SQLiteOpenHelper {
                 ARTISTS_LASTMODIFIED, false);
     }
 
-    public synchronized Cursor albumArtists(String[] orderBy) {
+    public Cursor albumArtists(String[] orderBy) {
         String[] fields = new String[]{ALBUMARTISTS_ALBUMARTIST,
                 ALBUMARTISTS_ALBUMARTISTDISAMBIGUATION, ALBUMARTISTS_LASTMODIFIED};
         String[] groupBy = new String[]{ALBUMARTISTS_ALBUMARTIST,
@@ -551,7 +1090,7 @@ public class CollectionDb extends SQLiteOpenHelper {
                 ALBUMARTISTS_LASTMODIFIED, false);
     }
 
-    public synchronized long artistCurrentRevision(String artist, String artistDisambiguation) {
+    public long artistCurrentRevision(String artist, String artistDisambiguation) {
         String[] fields = new String[]{ARTISTS_LASTMODIFIED};
         WhereInfo whereInfo = new WhereInfo();
         whereInfo.connection = "AND";
@@ -576,7 +1115,7 @@ public class CollectionDb extends SQLiteOpenHelper {
         return currentRevision;
     }
 
-    public synchronized Cursor artistAlbums(String artist, String artistDisambiguation) {
+    public Cursor artistAlbums(String artist, String artistDisambiguation) {
         String[] fields = new String[]{ID};
         WhereInfo whereInfo = new WhereInfo();
         whereInfo.connection = "AND";
@@ -618,7 +1157,7 @@ public class CollectionDb extends SQLiteOpenHelper {
                 new String[]{ALBUMS_ALBUM}, null, ALBUMS_TYPE, null, true);
     }
 
-    public synchronized long albumCurrentRevision(String album, String albumArtist,
+    public long albumCurrentRevision(String album, String albumArtist,
             String albumArtistDisambiguation) {
         String[] fields = new String[]{ID};
         WhereInfo whereInfo = new WhereInfo();
@@ -665,7 +1204,7 @@ public class CollectionDb extends SQLiteOpenHelper {
         return currentRevision;
     }
 
-    public synchronized Cursor albumTracks(String album, String albumArtist,
+    public Cursor albumTracks(String album, String albumArtist,
             String albumArtistDisambiguation) {
         String[] fields = new String[]{ID};
         WhereInfo whereInfo = new WhereInfo();
@@ -716,7 +1255,7 @@ public class CollectionDb extends SQLiteOpenHelper {
         return tracks(whereInfo, new String[]{TRACKS_ALBUMPOS});
     }
 
-    public synchronized Cursor artistTracks(String artist, String artistDisambiguation) {
+    public Cursor artistTracks(String artist, String artistDisambiguation) {
         String[] fields = new String[]{ID};
         WhereInfo whereInfo = new WhereInfo();
         whereInfo.connection = "AND";
@@ -745,112 +1284,159 @@ public class CollectionDb extends SQLiteOpenHelper {
         return tracks(whereInfo, new String[]{TRACKS_ALBUMID});
     }
 
+    /**
+     * Builds and runs a SELECT statement. Where values are always bound as arguments, so the same
+     * query shape always results in the exact same SQL string, which lets SQLiteDatabase reuse the
+     * compiled statement from its statement cache.
+     *
+     * @param groupBy            if not null, the result is being deduplicated by grouping on the
+     *                           given columns
+     * @param lastModifiedColumn if not null, the row with the most recent lastModified timestamp
+     *                           is chosen as the representative of each group
+     */
     private Cursor sqlSelect(String table, String[] fields, WhereInfo where,
             List<JoinInfo> joinInfos, String[] orderBy, String[] groupBy, String typeColumn,
             String lastModifiedColumn, boolean filterAllLoved) {
-        String whereString = "";
+        StringBuilder whereString = new StringBuilder();
         List<String> allWhereValues = new ArrayList<>();
         if (where != null) {
-            whereString = " WHERE ";
             boolean notFirst = false;
             for (String whereKey : where.where.keySet()) {
                 String[] whereValues = where.where.get(whereKey);
                 for (String whereValue : whereValues) {
                     if (notFirst) {
-                        whereString += " " + where.connection + " ";
+                        whereString.append(" ").append(where.connection).append(" ");
                     }
                     notFirst = true;
-                    whereString += table + "." + whereKey + (where.equals ? " = " : " != ") + "?";
+                    whereString.append(table).append(".").append(whereKey)
+                            .append(where.equals ? " = " : " != ").append("?");
                     allWhereValues.add(whereValue);
                 }
             }
         }
         if (typeColumn != null) {
-            if (whereString.isEmpty()) {
-                whereString = " WHERE ";
-            } else {
-                whereString += " AND ";
+            if (whereString.length() > 0) {
+                whereString.append(" AND ");
             }
             // filter out all implicitly added items
-            whereString += typeColumn + " != ?";
+            whereString.append(typeColumn).append(" != ?");
             allWhereValues.add(String.valueOf(TYPE_HATCHET_IMPLICIT));
         }
         if (filterAllLoved) {
-            if (whereString.isEmpty()) {
-                whereString = " WHERE ";
-            } else {
-                whereString += " AND ";
+            if (whereString.length() > 0) {
+                whereString.append(" AND ");
             }
             // filter out all explicitly added items
-            whereString += typeColumn + " != ?";
+            whereString.append(typeColumn).append(" != ?");
             allWhereValues.add(String.valueOf(TYPE_HATCHET_EXPLICIT));
         }
 
-        String joinString = "";
+        StringBuilder fromString = new StringBuilder(" FROM ").append(table);
         if (joinInfos != null) {
             for (JoinInfo joinInfo : joinInfos) {
-                joinString += " INNER JOIN " + joinInfo.table + " ON ";
+                fromString.append(" INNER JOIN ").append(joinInfo.table).append(" ON ");
                 boolean notFirst = false;
                 for (String joinKey : joinInfo.conditions.keySet()) {
                     if (notFirst) {
-                        joinString += " AND ";
+                        fromString.append(" AND ");
                     }
                     notFirst = true;
-                    joinString += joinKey + " = " + joinInfo.conditions.get(joinKey);
+                    fromString.append(joinKey).append(" = ")
+                            .append(joinInfo.conditions.get(joinKey));
                 }
             }
         }
+        if (whereString.length() > 0) {
+            fromString.append(" WHERE ").append(whereString);
+        }
 
-        String orderString = StringUtils.join(" , ", orderBy);
-        if (orderBy != null) {
-            orderString = " ORDER BY " + orderString;
+        StringBuilder statement = new StringBuilder("SELECT ");
+        if (groupBy == null || lastModifiedColumn == null) {
+            // No need to pick a specific row per group, so we can do it all in one flat query
+            appendFields(statement, fields, null);
+            statement.append(fromString);
+            appendClause(statement, " GROUP BY ", groupBy);
+        } else if (fields != null && Arrays.asList(fields).contains(lastModifiedColumn)
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            // Since SQLite 3.7.11 all bare columns of a group are taken from the row that contains
+            // the MAX() value, which is exactly the row we want. So we don't need a subquery.
+            appendFields(statement, fields, lastModifiedColumn);
+            statement.append(fromString);
+            appendClause(statement, " GROUP BY ", groupBy);
         } else {
-            orderString = "";
+            // Fall back to sorting in a subquery, so that the GROUP BY picks the most recent row
+            statement.append("* FROM ( SELECT ");
+            appendFields(statement, fields, null);
+            statement.append(fromString).append(" ORDER BY ").append(lastModifiedColumn)
+                    .append(" )");
+            appendClause(statement, " GROUP BY ", groupBy);
         }
+        appendClause(statement, " ORDER BY ", orderBy);
 
-        String deduplicationOrderString = "";
-        String groupString = StringUtils.join(" , ", groupBy);
-        if (groupBy != null) {
-            groupString = " GROUP BY " + groupString;
-            if (lastModifiedColumn != null) {
-                deduplicationOrderString = " ORDER BY " + lastModifiedColumn;
-            }
-        } else {
-            groupString = "";
+        String[] allWhereValuesArray = null;
+        if (allWhereValues.size() > 0) {
+            allWhereValuesArray = allWhereValues.toArray(new String[allWhereValues.size()]);
         }
+        return mDb.rawQuery(statement.toString(), allWhereValuesArray);
+    }
 
-        String fieldsString = StringUtils.join(", ", fields);
+    /**
+     * @param maxColumn the column that should be wrapped in a MAX() aggregate. Can be null.
+     */
+    private static void appendFields(StringBuilder sb, String[] fields, String maxColumn) {
         if (fields == null) {
-            fieldsString = "*";
+            sb.append("*");
+            return;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            if (fields[i].equals(maxColumn)) {
+                sb.append("MAX(").append(maxColumn).append(") AS ").append(maxColumn);
+            } else {
+                sb.append(fields[i]);
+            }
         }
+    }
 
-        String statement = "SELECT * FROM ( SELECT " + fieldsString + " FROM " + table + joinString
-                + whereString + deduplicationOrderString + " ) " + groupString + orderString;
-        String[] allWhereValuesArray = null;
-        if (allWhereValues.size() > 0) {
-            allWhereValuesArray = allWhereValues.toArray(new String[allWhereValues.size()]);
+    private static void appendClause(StringBuilder sb, String clause, String[] columns) {
+        if (columns != null) {
+            sb.append(clause);
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    sb.append(" , ");
+                }
+                sb.append(columns[i]);
+            }
         }
-        return mDb.rawQuery(statement, allWhereValuesArray);
     }
 
     private void storeNewRevision(String revision, int action) {
         storeNewRevision(mDb, revision, action);
+        bumpBrowseRevision();
     }
 
     private static void storeNewRevision(SQLiteDatabase db, String revision, int action) {
-        Cursor cursor = db.query(TABLE_TRACKS, new String[]{ID}, null, null, null, null, null);
-        int trackCount = cursor.getCount();
-        cursor.close();
+        // COUNT(*) is answered from the smallest index on the tracks table, so we don't have to
+        // step through a cursor over every single track
+        long trackCount = DatabaseUtils.queryNumEntries(db, TABLE_TRACKS);
 
         db.beginTransaction();
-        ContentValues values = new ContentValues();
-        values.put(REVISIONHISTORY_ACTION, action);
-        values.put(REVISIONHISTORY_TRACKCOUNT, trackCount);
-        values.put(REVISIONHISTORY_REVISION, revision);
-        values.put(REVISIONHISTORY_TIMESTAMP, System.currentTimeMillis());
-        db.insert(TABLE_REVISIONHISTORY, null, values);
-        db.setTransactionSuccessful();
-        db.endTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(REVISIONHISTORY_ACTION, action);
+            values.put(REVISIONHISTORY_TRACKCOUNT, trackCount);
+            values.put(REVISIONHISTORY_REVISION, revision);
+            values.put(REVISIONHISTORY_TIMESTAMP, System.currentTimeMillis());
+            long id = db.insert(TABLE_REVISIONHISTORY, null, values);
+            // Only the latest revisions are ever being looked at, so we prune the older ones
+            db.delete(TABLE_REVISIONHISTORY, ID + " <= ?",
+                    new String[]{String.valueOf(id - REVISIONHISTORY_MAX_ENTRIES)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 
     public String getRevision() {
@@ -886,14 +1472,14 @@ public class CollectionDb extends SQLiteOpenHelper {
     }
 
     private static String concatKeys(Object... keys) {
-        String result = "";
+        StringBuilder sb = new StringBuilder();
         for (int i = 0; i < keys.length; i++) {
             if (i > 0) {
-                result += "♣";
+                sb.append("♣");
             }
-            result += keys[i];
+            sb.append(keys[i]);
         }
-        return result;
+        return sb.toString();
     }
 
     public FuzzyIndex getFuzzyIndex() {
@@ -17,6 +17,7 @@
  */
 package org.tomahawk.libtomahawk.database;
 
+import org.tomahawk.libtomahawk.collection.CollectionCursor;
 import org.tomahawk.libtomahawk.collection.Playlist;
 import org.tomahawk.libtomahawk.collection.PlaylistComparator;
 import org.tomahawk.libtomahawk.collection.PlaylistEntry;
@@ -35,16 +36,19 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.text.TextUtils;
 import android.util.Log;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
+import java.util.Map;
 
 import de.greenrobot.event.EventBus;
 
@@ -62,7 +66,9 @@ public class DatabaseHelper {
 
     public static final int TRUE = 1;
 
-    public static final int CHUNK_SIZE = 50;
+    private static final String TEMP_TABLE_REMOVEDMEDIA = "temp.removedmedia";
+
+    private static final int TOPARTISTS_COUNT = 5;
 
     private static class Holder {
 
@@ -75,6 +81,16 @@ public class DatabaseHelper {
         public String mPlaylistId;
     }
 
+    /**
+     * Describes the state of a media directory at the time it has been walked by the media scan
+     */
+    public static class MediaDirFingerprint {
+
+        public String path;
+
+        public long lastModified;
+    }
+
     // Database fields
     private final SQLiteDatabase mDatabase;
 
@@ -82,6 +98,8 @@ public class DatabaseHelper {
         TomahawkSQLiteHelper dbHelper = new TomahawkSQLiteHelper(TomahawkApp.getContext());
         dbHelper.close();
         mDatabase = dbHelper.getWritableDatabase();
+        // Readers (e.g. loading a playlist) shouldn't have to wait for a running write transaction
+        mDatabase.enableWriteAheadLogging();
     }
 
     public static DatabaseHelper get() {
@@ -110,6 +128,23 @@ public class DatabaseHelper {
         storePlaylist(LOVEDITEMS_PLAYLIST_ID, playlist, reverseEntries);
     }
 
+    private static class StoredPlaylistEntry {
+
+        long id;
+
+        int index;
+
+        String trackName;
+
+        String artistName;
+
+        String albumName;
+
+        String resultHint;
+
+        int isFetchedViaHatchet;
+    }
+
     /**
      * Store the given {@link Playlist}
      *
@@ -133,53 +168,180 @@ public class DatabaseHelper {
                 playlist.getHatchetId());
         values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_TRACKCOUNT, entries.size());
 
+        long time = System.currentTimeMillis();
         mDatabase.beginTransaction();
-        mDatabase.insertWithOnConflict(TomahawkSQLiteHelper.TABLE_PLAYLISTS, null,
-                values,
-                SQLiteDatabase.CONFLICT_REPLACE);
-        // Delete every already associated Track entry
-        mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
-                TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?",
-                new String[]{playlistId});
-
-        // Store every single Track in the database and store the relationship
-        // by storing the playlists's id with it
-        for (int i = 0; i < entries.size(); i++) {
-            PlaylistEntry entry;
-            if (reverseEntries) {
-                entry = entries.get(entries.size() - 1 - i);
-            } else {
-                entry = entries.get(i);
+        try {
+            mDatabase.insertWithOnConflict(TomahawkSQLiteHelper.TABLE_PLAYLISTS, null,
+                    values,
+                    SQLiteDatabase.CONFLICT_REPLACE);
+
+            // Get all already associated Track entries mapped to their playlistentryid. Entries
+            // without an id can't be matched, so they're simply being removed.
+            Map<String, StoredPlaylistEntry> storedEntries = new HashMap<>();
+            List<Long> removedIds = new ArrayList<>();
+            Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS,
+                    new String[]{TomahawkSQLiteHelper.TRACKS_COLUMN_ID,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYID,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET},
+                    TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?",
+                    new String[]{playlistId}, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    StoredPlaylistEntry stored = new StoredPlaylistEntry();
+                    stored.id = cursor.getLong(0);
+                    stored.index = cursor.isNull(2) ? -1 : cursor.getInt(2);
+                    stored.trackName = cursor.getString(3);
+                    stored.artistName = cursor.getString(4);
+                    stored.albumName = cursor.getString(5);
+                    stored.resultHint = cursor.getString(6);
+                    stored.isFetchedViaHatchet = cursor.getInt(7);
+                    String entryId = cursor.getString(1);
+                    if (entryId == null || storedEntries.containsKey(entryId)) {
+                        removedIds.add(stored.id);
+                    } else {
+                        storedEntries.put(entryId, stored);
+                    }
+                }
+            } finally {
+                cursor.close();
             }
-            values.clear();
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID, playlistId);
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
-                    entry.getQuery().getBasicTrack().getName());
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
-                    entry.getQuery().getBasicTrack().getArtist().getName());
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
-                    entry.getQuery().getBasicTrack().getAlbum().getName());
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT,
-                    entry.getQuery().getTopTrackResultKey());
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX, i);
-            if (entry.getQuery().isFetchedViaHatchet()) {
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET,
-                        TRUE);
-            } else {
-                values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET,
-                        FALSE);
+
+            SQLiteStatement insert = mDatabase.compileStatement("INSERT INTO "
+                    + TomahawkSQLiteHelper.TABLE_TRACKS + " ("
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME + ", "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME + ", "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME + ", "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT + ", "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET + ", "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX + ", "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + ", "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYID
+                    + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+            SQLiteStatement update = mDatabase.compileStatement("UPDATE "
+                    + TomahawkSQLiteHelper.TABLE_TRACKS + " SET "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME + " = ?, "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME + " = ?, "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME + " = ?, "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT + " = ?, "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET + " = ?, "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX + " = ?"
+                    + " WHERE " + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + " = ?");
+            SQLiteStatement delete = mDatabase.compileStatement("DELETE FROM "
+                    + TomahawkSQLiteHelper.TABLE_TRACKS + " WHERE "
+                    + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + " = ?");
+            int insertCount = 0;
+            int updateCount = 0;
+            try {
+                // Only insert new entries and update the ones that have been moved or changed
+                for (int i = 0; i < entries.size(); i++) {
+                    PlaylistEntry entry;
+                    if (reverseEntries) {
+                        entry = entries.get(entries.size() - 1 - i);
+                    } else {
+                        entry = entries.get(i);
+                    }
+                    Track track = entry.getQuery().getBasicTrack();
+                    String trackName = track.getName();
+                    String artistName = track.getArtist().getName();
+                    String albumName = track.getAlbum().getName();
+                    String resultHint = entry.getQuery().getTopTrackResultKey();
+                    int isFetchedViaHatchet = entry.getQuery().isFetchedViaHatchet() ? TRUE : FALSE;
+                    StoredPlaylistEntry stored = storedEntries.remove(entry.getId());
+                    if (stored == null) {
+                        bindStringOrNull(insert, 1, trackName);
+                        bindStringOrNull(insert, 2, artistName);
+                        bindStringOrNull(insert, 3, albumName);
+                        bindStringOrNull(insert, 4, resultHint);
+                        insert.bindLong(5, isFetchedViaHatchet);
+                        insert.bindLong(6, i);
+                        insert.bindString(7, playlistId);
+                        bindStringOrNull(insert, 8, entry.getId());
+                        insert.executeInsert();
+                        insertCount++;
+                    } else if (stored.index != i
+                            || !TextUtils.equals(stored.trackName, trackName)
+                            || !TextUtils.equals(stored.artistName, artistName)
+                            || !TextUtils.equals(stored.albumName, albumName)
+                            || !TextUtils.equals(stored.resultHint, resultHint)
+                            || stored.isFetchedViaHatchet != isFetchedViaHatchet) {
+                        bindStringOrNull(update, 1, trackName);
+                        bindStringOrNull(update, 2, artistName);
+                        bindStringOrNull(update, 3, albumName);
+                        bindStringOrNull(update, 4, resultHint);
+                        update.bindLong(5, isFetchedViaHatchet);
+                        update.bindLong(6, i);
+                        update.bindLong(7, stored.id);
+                        update.executeUpdateDelete();
+                        updateCount++;
+                    }
+                }
+                // Every stored entry that hasn't been matched is no longer part of the playlist
+                for (StoredPlaylistEntry stored : storedEntries.values()) {
+                    removedIds.add(stored.id);
+                }
+                for (Long id : removedIds) {
+                    delete.bindLong(1, id);
+                    delete.executeUpdateDelete();
+                }
+            } finally {
+                insert.close();
+                update.close();
+                delete.close();
             }
-            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYID,
-                    entry.getId());
-            mDatabase.insert(TomahawkSQLiteHelper.TABLE_TRACKS, null, values);
+            updateTopArtists(playlistId);
+            mDatabase.setTransactionSuccessful();
+            Log.d(TAG, "storePlaylist - " + insertCount + " inserted, " + updateCount
+                    + " updated, " + removedIds.size() + " removed in "
+                    + (System.currentTimeMillis() - time) + "ms");
+        } finally {
+            mDatabase.endTransaction();
         }
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
         PlaylistsUpdatedEvent event = new PlaylistsUpdatedEvent();
         event.mPlaylistId = playlistId;
         EventBus.getDefault().post(event);
     }
 
+    /**
+     * Recalculates and stores the top artists of the {@link Playlist} with the given id. Must be
+     * called within the transaction that has changed the playlist's entries, so that the top
+     * artists never have to be calculated from the materialized entries when loading playlists.
+     */
+    private void updateTopArtists(String playlistId) {
+        String[] columns = new String[]{TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME};
+        String selection = TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?";
+        String[] selectionArgs = new String[]{playlistId};
+        Cursor cursor;
+        if (LOVEDITEMS_PLAYLIST_ID.equals(playlistId)) {
+            // The loved items are being displayed in reverse order, so we want the most recent
+            // artists
+            cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS, columns, selection,
+                    selectionArgs, null, null,
+                    TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX + " DESC",
+                    String.valueOf(TOPARTISTS_COUNT));
+        } else {
+            cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS, columns, selection,
+                    selectionArgs, TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME, null,
+                    "COUNT(*) DESC", String.valueOf(TOPARTISTS_COUNT));
+        }
+        String topArtistsString = "";
+        try {
+            while (cursor.moveToNext()) {
+                topArtistsString += cursor.getString(0) + "\t\t";
+            }
+        } finally {
+            cursor.close();
+        }
+        ContentValues values = new ContentValues();
+        values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_TOPARTISTS, topArtistsString);
+        mDatabase.update(TomahawkSQLiteHelper.TABLE_PLAYLISTS, values,
+                TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " = ?", selectionArgs);
+    }
+
     /**
      * Rename the given {@link Playlist}
      *
@@ -302,20 +464,37 @@ public class DatabaseHelper {
      */
     public List<Playlist> getPlaylists() {
         final List<Playlist> playListList = new ArrayList<>();
-        String[] columns = new String[]{TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID};
-
-        Cursor playlistsCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_PLAYLISTS,
-                columns, TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " != ?",
-                new String[]{LOVEDITEMS_PLAYLIST_ID}, null, null, null);
-        playlistsCursor.moveToFirst();
-        while (!playlistsCursor.isAfterLast()) {
-            Playlist playlist = getEmptyPlaylist(playlistsCursor.getString(0));
-            if (playlist != null) {
+        // Get every playlist together with its track count in a single round-trip
+        Cursor playlistsCursor = mDatabase.rawQuery("SELECT p."
+                + TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + ", p."
+                + TomahawkSQLiteHelper.PLAYLISTS_COLUMN_NAME + ", p."
+                + TomahawkSQLiteHelper.PLAYLISTS_COLUMN_CURRENTREVISION + ", p."
+                + TomahawkSQLiteHelper.PLAYLISTS_COLUMN_HATCHETID + ", p."
+                + TomahawkSQLiteHelper.PLAYLISTS_COLUMN_TOPARTISTS + ", COUNT(t."
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ID + ")"
+                + " FROM " + TomahawkSQLiteHelper.TABLE_PLAYLISTS + " p"
+                + " LEFT JOIN " + TomahawkSQLiteHelper.TABLE_TRACKS + " t"
+                + " ON t." + TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID
+                + " = p." + TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID
+                + " WHERE p." + TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " != ?"
+                + " GROUP BY p." + TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID,
+                new String[]{LOVEDITEMS_PLAYLIST_ID});
+        try {
+            while (playlistsCursor.moveToNext()) {
+                Playlist playlist = Playlist.get(playlistsCursor.getString(0));
+                playlist.setName(playlistsCursor.getString(1));
+                playlist.setCurrentRevision(playlistsCursor.getString(2));
+                playlist.setHatchetId(playlistsCursor.getString(3));
+                String rawTopArtistsString = playlistsCursor.getString(4);
+                if (rawTopArtistsString != null && rawTopArtistsString.length() > 0) {
+                    playlist.setTopArtistNames(rawTopArtistsString.split("\t\t"));
+                }
+                playlist.setCount(playlistsCursor.getLong(5));
                 playListList.add(playlist);
             }
-            playlistsCursor.moveToNext();
+        } finally {
+            playlistsCursor.close();
         }
-        playlistsCursor.close();
         Collections.sort(playListList, new PlaylistComparator());
         return playListList;
     }
@@ -441,41 +620,27 @@ public class DatabaseHelper {
                     TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT,
                     TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET,
                     TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYID};
+            // The entries are only being materialized once they're being accessed
             Cursor tracksCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS, columns,
                     TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?",
                     new String[]{playlistId}, null, null,
                     TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX + (reverseEntries
                             ? " DESC" : " ASC"));
-            ArrayList<PlaylistEntry> entries = new ArrayList<>();
-            tracksCursor.moveToFirst();
-            while (!tracksCursor.isAfterLast()) {
-                String trackName = tracksCursor.getString(0);
-                String artistName = tracksCursor.getString(1);
-                String albumName = tracksCursor.getString(2);
-                String resultHint = tracksCursor.getString(3);
-                Query query = Query.get(trackName, albumName, artistName, resultHint, false,
-                        tracksCursor.getInt(4) == TRUE);
-                String entryId;
-                if (tracksCursor.getString(5) != null) {
-                    entryId = tracksCursor.getString(5);
-                } else {
-                    entryId = IdGenerator.getLifetimeUniqueStringId();
-                }
-                PlaylistEntry entry = PlaylistEntry.get(playlistId, query, entryId);
-                entries.add(entry);
-                tracksCursor.moveToNext();
-            }
-            Playlist playlist = Playlist.fromEntryList(playlistId,
-                    playlistsCursor.getString(0), playlistsCursor.getString(1), entries);
+            Playlist playlist = Playlist.get(playlistId);
+            playlist.setName(playlistsCursor.getString(0));
+            playlist.setCurrentRevision(playlistsCursor.getString(1));
+            playlist.setCursor(
+                    new CollectionCursor<>(tracksCursor, PlaylistEntry.class, playlist));
             playlist.setHatchetId(playlistsCursor.getString(2));
             playlist.setFilled(true);
-            tracksCursor.close();
             String rawTopArtistsString = playlistsCursor.getString(3);
             if (rawTopArtistsString != null && rawTopArtistsString.length() > 0) {
                 playlist.setTopArtistNames(rawTopArtistsString.split("\t\t"));
             }
             playlistsCursor.close();
-            playlist.setCount(getPlaylistTrackCount(playlistId));
+            // The tracks have been queried anyway, so there's no need to look up the stored count,
+            // which might even have to be written first
+            playlist.setCount(tracksCursor.getCount());
             return playlist;
         }
         playlistsCursor.close();
@@ -553,6 +718,7 @@ public class DatabaseHelper {
         mDatabase.update(TomahawkSQLiteHelper.TABLE_PLAYLISTS, values,
                 TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " = ?",
                 new String[]{playlistId});
+        updateTopArtists(playlistId);
         mDatabase.setTransactionSuccessful();
         mDatabase.endTransaction();
         PlaylistsUpdatedEvent event = new PlaylistsUpdatedEvent();
@@ -600,6 +766,7 @@ public class DatabaseHelper {
         mDatabase.update(TomahawkSQLiteHelper.TABLE_PLAYLISTS, values,
                 TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " = ?",
                 new String[]{playlistId});
+        updateTopArtists(playlistId);
         mDatabase.setTransactionSuccessful();
         mDatabase.endTransaction();
         PlaylistsUpdatedEvent event = new PlaylistsUpdatedEvent();
@@ -650,6 +817,7 @@ public class DatabaseHelper {
         mDatabase.update(TomahawkSQLiteHelper.TABLE_PLAYLISTS, values,
                 TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " = ?",
                 new String[]{playlistId});
+        updateTopArtists(playlistId);
         mDatabase.setTransactionSuccessful();
         mDatabase.endTransaction();
         PlaylistsUpdatedEvent event = new PlaylistsUpdatedEvent();
@@ -703,6 +871,7 @@ public class DatabaseHelper {
                             + TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME + " = ?",
                     new String[]{LOVEDITEMS_PLAYLIST_ID, query.getName(),
                             query.getArtist().getName()});
+            updateTopArtists(LOVEDITEMS_PLAYLIST_ID);
             mDatabase.setTransactionSuccessful();
             mDatabase.endTransaction();
             PlaylistsUpdatedEvent event = new PlaylistsUpdatedEvent();
@@ -738,27 +907,53 @@ public class DatabaseHelper {
      * @param timeStamp a timestamp indicating when this operation has been added to the oplog
      */
     public void addOpToInfoSystemOpLog(InfoRequestData opToLog, int timeStamp) {
-        ContentValues values = new ContentValues();
+        addOpsToInfoSystemOpLog(Collections.singletonList(opToLog), new int[]{timeStamp});
+    }
 
+    /**
+     * Insert the given operations into the InfoSystem-OpLog table within a single transaction
+     *
+     * @param opsToLog   the InfoRequestData objects that should be stored
+     * @param timeStamps the timestamps of the given operations, in the same order
+     */
+    public void addOpsToInfoSystemOpLog(List<InfoRequestData> opsToLog, int[] timeStamps) {
         mDatabase.beginTransaction();
-        values.put(TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_TYPE, opToLog.getType());
-        values.put(TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_HTTPTYPE, opToLog.getHttpType());
-        values.put(TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_TIMESTAMP, timeStamp);
-        if (opToLog.getJsonStringToSend() != null) {
-            values.put(TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_JSONSTRING,
-                    opToLog.getJsonStringToSend());
-        }
-        if (opToLog.getQueryParams() != null) {
-            String paramsJsonString = GsonHelper.get().toJson(opToLog.getQueryParams());
-            values.put(TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_PARAMS, paramsJsonString);
+        try {
+            SQLiteStatement insert = mDatabase.compileStatement("INSERT INTO "
+                    + TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG + " ("
+                    + TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_TYPE + ", "
+                    + TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_HTTPTYPE + ", "
+                    + TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_TIMESTAMP + ", "
+                    + TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_JSONSTRING + ", "
+                    + TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_PARAMS
+                    + ") VALUES (?, ?, ?, ?, ?)");
+            try {
+                for (int i = 0; i < opsToLog.size(); i++) {
+                    InfoRequestData opToLog = opsToLog.get(i);
+                    insert.bindLong(1, opToLog.getType());
+                    insert.bindLong(2, opToLog.getHttpType());
+                    insert.bindLong(3, timeStamps[i]);
+                    bindStringOrNull(insert, 4, opToLog.getJsonStringToSend());
+                    if (opToLog.getQueryParams() != null) {
+                        insert.bindString(5,
+                                GsonHelper.get().toJson(opToLog.getQueryParams()));
+                    } else {
+                        insert.bindNull(5);
+                    }
+                    insert.executeInsert();
+                }
+            } finally {
+                insert.close();
+            }
+            long logCount = getLoggedOpsCount();
+            ContentValues values = new ContentValues();
+            values.put(TomahawkSQLiteHelper.INFOSYSTEMOPLOGINFO_COLUMN_LOGCOUNT,
+                    logCount + opsToLog.size());
+            mDatabase.update(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOGINFO, values, null, null);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
         }
-        mDatabase.insert(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG, null, values);
-        long logCount = getLoggedOpsCount();
-        values = new ContentValues();
-        values.put(TomahawkSQLiteHelper.INFOSYSTEMOPLOGINFO_COLUMN_LOGCOUNT, logCount + 1);
-        mDatabase.update(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOGINFO, values, null, null);
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
     }
 
     /**
@@ -789,7 +984,7 @@ public class DatabaseHelper {
         mDatabase.beginTransaction();
         int deletedLogs = 0;
         for (InfoRequestData loggedOp : loggedOps) {
-            deletedLogs = mDatabase.delete(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG,
+            deletedLogs += mDatabase.delete(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG,
                     TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_ID + " = ?",
                     new String[]{String.valueOf(loggedOp.getLoggedOpId())});
         }
@@ -803,9 +998,56 @@ public class DatabaseHelper {
     }
 
     /**
-     * @return an InfoRequestData object that contains all data that should be delivered to the API
+     * Atomically applies the result of coalescing logged operations to the InfoSystem-OpLog table
+     *
+     * @param updatedOps the operations whose json string has changed, because other operations
+     *                   have been merged into them
+     * @param removedOps the operations that are redundant and should be removed
      */
-    public List<InfoRequestData> getLoggedOps() {
+    public void coalesceOpsInInfoSystemOpLog(List<InfoRequestData> updatedOps,
+            List<InfoRequestData> removedOps) {
+        mDatabase.beginTransaction();
+        try {
+            SQLiteStatement update = mDatabase.compileStatement("UPDATE "
+                    + TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG + " SET "
+                    + TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_JSONSTRING + " = ? WHERE "
+                    + TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_ID + " = ?");
+            SQLiteStatement delete = mDatabase.compileStatement("DELETE FROM "
+                    + TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG + " WHERE "
+                    + TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_ID + " = ?");
+            int deletedLogs = 0;
+            try {
+                for (InfoRequestData loggedOp : updatedOps) {
+                    bindStringOrNull(update, 1, loggedOp.getJsonStringToSend());
+                    update.bindLong(2, loggedOp.getLoggedOpId());
+                    update.executeUpdateDelete();
+                }
+                for (InfoRequestData loggedOp : removedOps) {
+                    delete.bindLong(1, loggedOp.getLoggedOpId());
+                    deletedLogs += delete.executeUpdateDelete();
+                }
+            } finally {
+                update.close();
+                delete.close();
+            }
+            long logCount = getLoggedOpsCount();
+            ContentValues values = new ContentValues();
+            values.put(TomahawkSQLiteHelper.INFOSYSTEMOPLOGINFO_COLUMN_LOGCOUNT,
+                    logCount - deletedLogs);
+            mDatabase.update(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOGINFO, values, null, null);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * @param afterLoggedOpId only operations with an id greater than this one are returned, so
+     *                        that the op log can be read incrementally
+     * @return InfoRequestData objects that contain all data that should be delivered to the API,
+     * in the order in which they have been logged
+     */
+    public List<InfoRequestData> getLoggedOps(int afterLoggedOpId) {
         List<InfoRequestData> loggedOps = new ArrayList<>();
         String[] columns = new String[]{TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_ID,
                 TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_TYPE,
@@ -814,8 +1056,9 @@ public class DatabaseHelper {
                 TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_PARAMS};
 
         Cursor opLogCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG,
-                columns, null, null, null, null,
-                TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_TIMESTAMP + " DESC");
+                columns, TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_ID + " > ?",
+                new String[]{String.valueOf(afterLoggedOpId)}, null, null,
+                TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_ID + " ASC");
         opLogCursor.moveToFirst();
         while (!opLogCursor.isAfterLast()) {
             String requestId = IdGenerator.getSessionUniqueStringId();
@@ -860,11 +1103,11 @@ public class DatabaseHelper {
         return logCount;
     }
 
-    private static void safePut(ContentValues values, String key, String value) {
-        if (value == null) {
-            values.putNull(key);
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
         } else {
-            values.put(key, value);
+            statement.bindNull(index);
         }
     }
 
@@ -874,121 +1117,240 @@ public class DatabaseHelper {
      * @param mws which you like to add to the database
      */
     public synchronized void addMedias(List<MediaWrapper> mws) {
-        ContentValues values = new ContentValues();
-
+        long time = System.currentTimeMillis();
         mDatabase.beginTransaction();
-        for (MediaWrapper mw : mws) {
-            values.put(TomahawkSQLiteHelper.MEDIA_LOCATION, mw.getLocation());
-            values.put(TomahawkSQLiteHelper.MEDIA_TIME, mw.getTime());
-            values.put(TomahawkSQLiteHelper.MEDIA_LENGTH, mw.getLength());
-            values.put(TomahawkSQLiteHelper.MEDIA_TYPE, mw.getType());
-            values.put(TomahawkSQLiteHelper.MEDIA_TITLE, mw.getTitle());
-            safePut(values, TomahawkSQLiteHelper.MEDIA_ARTIST, mw.getArtist());
-            safePut(values, TomahawkSQLiteHelper.MEDIA_GENRE, mw.getGenre());
-            safePut(values, TomahawkSQLiteHelper.MEDIA_ALBUM, mw.getAlbum());
-            safePut(values, TomahawkSQLiteHelper.MEDIA_ALBUMARTIST, mw.getAlbumArtist());
-            values.put(TomahawkSQLiteHelper.MEDIA_WIDTH, mw.getWidth());
-            values.put(TomahawkSQLiteHelper.MEDIA_HEIGHT, mw.getHeight());
-            values.put(TomahawkSQLiteHelper.MEDIA_ARTWORKURL, mw.getArtworkURL());
-            values.put(TomahawkSQLiteHelper.MEDIA_AUDIOTRACK, mw.getAudioTrack());
-            values.put(TomahawkSQLiteHelper.MEDIA_SPUTRACK, mw.getSpuTrack());
-            values.put(TomahawkSQLiteHelper.MEDIA_TRACKNUMBER, mw.getTrackNumber());
-            values.put(TomahawkSQLiteHelper.MEDIA_DISCNUMBER, mw.getDiscNumber());
-            values.put(TomahawkSQLiteHelper.MEDIA_LASTMODIFIED, mw.getLastModified());
-            mDatabase.replace(TomahawkSQLiteHelper.TABLE_MEDIA, "NULL", values);
+        SQLiteStatement insert = mDatabase.compileStatement("INSERT OR REPLACE INTO "
+                + TomahawkSQLiteHelper.TABLE_MEDIA + " ("
+                + TomahawkSQLiteHelper.MEDIA_LOCATION + ", "
+                + TomahawkSQLiteHelper.MEDIA_TIME + ", "
+                + TomahawkSQLiteHelper.MEDIA_LENGTH + ", "
+                + TomahawkSQLiteHelper.MEDIA_TYPE + ", "
+                + TomahawkSQLiteHelper.MEDIA_TITLE + ", "
+                + TomahawkSQLiteHelper.MEDIA_ARTIST + ", "
+                + TomahawkSQLiteHelper.MEDIA_GENRE + ", "
+                + TomahawkSQLiteHelper.MEDIA_ALBUM + ", "
+                + TomahawkSQLiteHelper.MEDIA_ALBUMARTIST + ", "
+                + TomahawkSQLiteHelper.MEDIA_WIDTH + ", "
+                + TomahawkSQLiteHelper.MEDIA_HEIGHT + ", "
+                + TomahawkSQLiteHelper.MEDIA_ARTWORKURL + ", "
+                + TomahawkSQLiteHelper.MEDIA_AUDIOTRACK + ", "
+                + TomahawkSQLiteHelper.MEDIA_SPUTRACK + ", "
+                + TomahawkSQLiteHelper.MEDIA_TRACKNUMBER + ", "
+                + TomahawkSQLiteHelper.MEDIA_DISCNUMBER + ", "
+                + TomahawkSQLiteHelper.MEDIA_LASTMODIFIED
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        try {
+            for (MediaWrapper mw : mws) {
+                insert.bindString(1, mw.getLocation());
+                insert.bindLong(2, mw.getTime());
+                insert.bindLong(3, mw.getLength());
+                insert.bindLong(4, mw.getType());
+                bindStringOrNull(insert, 5, mw.getTitle());
+                bindStringOrNull(insert, 6, mw.getArtist());
+                bindStringOrNull(insert, 7, mw.getGenre());
+                bindStringOrNull(insert, 8, mw.getAlbum());
+                bindStringOrNull(insert, 9, mw.getAlbumArtist());
+                insert.bindLong(10, mw.getWidth());
+                insert.bindLong(11, mw.getHeight());
+                bindStringOrNull(insert, 12, mw.getArtworkURL());
+                insert.bindLong(13, mw.getAudioTrack());
+                insert.bindLong(14, mw.getSpuTrack());
+                insert.bindLong(15, mw.getTrackNumber());
+                insert.bindLong(16, mw.getDiscNumber());
+                insert.bindLong(17, mw.getLastModified());
+                insert.executeInsert();
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            mDatabase.endTransaction();
         }
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
+        Log.d(TAG, "addMedias - stored " + mws.size() + " media items in "
+                + (System.currentTimeMillis() - time) + "ms");
+    }
+
+    public interface MediaLocationCallback {
 
+        void onMediaLocation(String location);
     }
 
-    public synchronized HashMap<String, MediaWrapper> getMedias() {
-        Cursor cursor;
-        HashMap<String, MediaWrapper> medias = new HashMap<>();
-        int chunk_count = 0;
-        int count;
-
-        do {
-            count = 0;
-            cursor = mDatabase.rawQuery(String.format(Locale.US,
-                    "SELECT %s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s FROM %s LIMIT %d OFFSET %d",
-                    TomahawkSQLiteHelper.MEDIA_LOCATION, //0 string
-                    TomahawkSQLiteHelper.MEDIA_TIME, //1 long
-                    TomahawkSQLiteHelper.MEDIA_LENGTH, //2 long
-                    TomahawkSQLiteHelper.MEDIA_TYPE, //3 int
-                    TomahawkSQLiteHelper.MEDIA_TITLE, //4 string
-                    TomahawkSQLiteHelper.MEDIA_ARTIST, //5 string
-                    TomahawkSQLiteHelper.MEDIA_GENRE, //6 string
-                    TomahawkSQLiteHelper.MEDIA_ALBUM, //7 string
-                    TomahawkSQLiteHelper.MEDIA_ALBUMARTIST, //8 string
-                    TomahawkSQLiteHelper.MEDIA_WIDTH, //9 int
-                    TomahawkSQLiteHelper.MEDIA_HEIGHT, //10 int
-                    TomahawkSQLiteHelper.MEDIA_ARTWORKURL, //11 string
-                    TomahawkSQLiteHelper.MEDIA_AUDIOTRACK, //12 int
-                    TomahawkSQLiteHelper.MEDIA_SPUTRACK, //13 int
-                    TomahawkSQLiteHelper.MEDIA_TRACKNUMBER, // 14 int
-                    TomahawkSQLiteHelper.MEDIA_DISCNUMBER, //15 int
-                    TomahawkSQLiteHelper.MEDIA_LASTMODIFIED, //16 long
-                    TomahawkSQLiteHelper.TABLE_MEDIA,
-                    CHUNK_SIZE,
-                    chunk_count * CHUNK_SIZE), null);
-
-            if (cursor.moveToFirst()) {
-                try {
-                    do {
-                        final Uri uri = AndroidUtil.LocationToUri(cursor.getString(0));
-                        MediaWrapper media = new MediaWrapper(uri,
-                                cursor.getLong(1),      // MEDIA_TIME
-                                cursor.getLong(2),      // MEDIA_LENGTH
-                                cursor.getInt(3),       // MEDIA_TYPE
-                                null,                   // MEDIA_PICTURE
-                                cursor.getString(4),    // MEDIA_TITLE
-                                cursor.getString(5),    // MEDIA_ARTIST
-                                cursor.getString(6),    // MEDIA_GENRE
-                                cursor.getString(7),    // MEDIA_ALBUM
-                                cursor.getString(8),    // MEDIA_ALBUMARTIST
-                                cursor.getInt(9),       // MEDIA_WIDTH
-                                cursor.getInt(10),       // MEDIA_HEIGHT
-                                cursor.getString(11),   // MEDIA_ARTWORKURL
-                                cursor.getInt(12),      // MEDIA_AUDIOTRACK
-                                cursor.getInt(13),      // MEDIA_SPUTRACK
-                                cursor.getInt(14),      // MEDIA_TRACKNUMBER
-                                cursor.getInt(15),     // MEDIA_DISCNUMBER
-                                cursor.getLong(16));     // MEDIA_LAST_MODIFIED
-                        medias.put(media.getUri().toString(), media);
-
-                        count++;
-                    } while (cursor.moveToNext());
-                } catch (IllegalStateException e) {
-                    //Google bug causing IllegalStateException, see
-                    //https://code.google.com/p/android/issues/detail?id=32472
-                }
-            }
+    public interface MediaCallback {
 
+        void onMedia(MediaWrapper mw);
+    }
+
+    /**
+     * Streams the location of every stored media item to the given callback, without creating any
+     * {@link MediaWrapper}s.
+     */
+    public synchronized void forEachMediaLocation(MediaLocationCallback callback) {
+        Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_MEDIA,
+                new String[]{TomahawkSQLiteHelper.MEDIA_LOCATION}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                callback.onMediaLocation(cursor.getString(0));
+            }
+        } catch (IllegalStateException e) {
+            //Google bug causing IllegalStateException, see
+            //https://code.google.com/p/android/issues/detail?id=32472
+        } finally {
             cursor.close();
-            chunk_count++;
-        } while (count == CHUNK_SIZE);
+        }
+    }
 
-        return medias;
+    /**
+     * Streams every stored media item of the given type to the given callback. Only one {@link
+     * MediaWrapper} is being created at a time, so the callback must not hold on to it, unless it
+     * really needs to.
+     */
+    public synchronized void forEachMedia(int type, MediaCallback callback) {
+        Cursor cursor = mDatabase.rawQuery(String.format(Locale.US,
+                "SELECT %s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s FROM %s WHERE %s = ?",
+                TomahawkSQLiteHelper.MEDIA_LOCATION, //0 string
+                TomahawkSQLiteHelper.MEDIA_TIME, //1 long
+                TomahawkSQLiteHelper.MEDIA_LENGTH, //2 long
+                TomahawkSQLiteHelper.MEDIA_TYPE, //3 int
+                TomahawkSQLiteHelper.MEDIA_TITLE, //4 string
+                TomahawkSQLiteHelper.MEDIA_ARTIST, //5 string
+                TomahawkSQLiteHelper.MEDIA_GENRE, //6 string
+                TomahawkSQLiteHelper.MEDIA_ALBUM, //7 string
+                TomahawkSQLiteHelper.MEDIA_ALBUMARTIST, //8 string
+                TomahawkSQLiteHelper.MEDIA_WIDTH, //9 int
+                TomahawkSQLiteHelper.MEDIA_HEIGHT, //10 int
+                TomahawkSQLiteHelper.MEDIA_ARTWORKURL, //11 string
+                TomahawkSQLiteHelper.MEDIA_AUDIOTRACK, //12 int
+                TomahawkSQLiteHelper.MEDIA_SPUTRACK, //13 int
+                TomahawkSQLiteHelper.MEDIA_TRACKNUMBER, // 14 int
+                TomahawkSQLiteHelper.MEDIA_DISCNUMBER, //15 int
+                TomahawkSQLiteHelper.MEDIA_LASTMODIFIED, //16 long
+                TomahawkSQLiteHelper.TABLE_MEDIA,
+                TomahawkSQLiteHelper.MEDIA_TYPE), new String[]{String.valueOf(type)});
+        try {
+            while (cursor.moveToNext()) {
+                final Uri uri = AndroidUtil.LocationToUri(cursor.getString(0));
+                MediaWrapper media = new MediaWrapper(uri,
+                        cursor.getLong(1),      // MEDIA_TIME
+                        cursor.getLong(2),      // MEDIA_LENGTH
+                        cursor.getInt(3),       // MEDIA_TYPE
+                        null,                   // MEDIA_PICTURE
+                        cursor.getString(4),    // MEDIA_TITLE
+                        cursor.getString(5),    // MEDIA_ARTIST
+                        cursor.getString(6),    // MEDIA_GENRE
+                        cursor.getString(7),    // MEDIA_ALBUM
+                        cursor.getString(8),    // MEDIA_ALBUMARTIST
+                        cursor.getInt(9),       // MEDIA_WIDTH
+                        cursor.getInt(10),       // MEDIA_HEIGHT
+                        cursor.getString(11),   // MEDIA_ARTWORKURL
+                        cursor.getInt(12),      // MEDIA_AUDIOTRACK
+                        cursor.getInt(13),      // MEDIA_SPUTRACK
+                        cursor.getInt(14),      // MEDIA_TRACKNUMBER
+                        cursor.getInt(15),     // MEDIA_DISCNUMBER
+                        cursor.getLong(16));     // MEDIA_LAST_MODIFIED
+                callback.onMedia(media);
+            }
+        } catch (IllegalStateException e) {
+            //Google bug causing IllegalStateException, see
+            //https://code.google.com/p/android/issues/detail?id=32472
+        } finally {
+            cursor.close();
+        }
     }
 
-    public synchronized void removeMedias(Set<String> locations) {
+    /**
+     * Removes the media items with the given locations from the database. The locations are
+     * written into a temporary table first, so that all media items can be removed with a single
+     * set-based DELETE.
+     */
+    public synchronized void removeMedias(Collection<String> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+        long time = System.currentTimeMillis();
         mDatabase.beginTransaction();
         try {
-            for (String location : locations) {
-                mDatabase.delete(TomahawkSQLiteHelper.TABLE_MEDIA,
-                        TomahawkSQLiteHelper.MEDIA_LOCATION + "=?", new String[]{location});
+            // Temporary tables are bound to the connection, which stays the same for the whole
+            // transaction
+            mDatabase.execSQL("CREATE TEMP TABLE IF NOT EXISTS " + TEMP_TABLE_REMOVEDMEDIA
+                    + " (" + TomahawkSQLiteHelper.MEDIA_LOCATION + " TEXT PRIMARY KEY NOT NULL)");
+            mDatabase.execSQL("DELETE FROM " + TEMP_TABLE_REMOVEDMEDIA);
+            SQLiteStatement insert = mDatabase.compileStatement("INSERT OR IGNORE INTO "
+                    + TEMP_TABLE_REMOVEDMEDIA + " (" + TomahawkSQLiteHelper.MEDIA_LOCATION
+                    + ") VALUES (?)");
+            try {
+                for (String location : locations) {
+                    insert.bindString(1, location);
+                    insert.executeInsert();
+                }
+            } finally {
+                insert.close();
             }
+            mDatabase.execSQL("DELETE FROM " + TomahawkSQLiteHelper.TABLE_MEDIA + " WHERE "
+                    + TomahawkSQLiteHelper.MEDIA_LOCATION + " IN (SELECT "
+                    + TomahawkSQLiteHelper.MEDIA_LOCATION + " FROM " + TEMP_TABLE_REMOVEDMEDIA
+                    + ")");
+            mDatabase.execSQL("DROP TABLE " + TEMP_TABLE_REMOVEDMEDIA);
             mDatabase.setTransactionSuccessful();
         } finally {
             mDatabase.endTransaction();
         }
+        Log.d(TAG, "removeMedias - removed " + locations.size() + " media items in "
+                + (System.currentTimeMillis() - time) + "ms");
     }
 
     public synchronized void removeAllMedias() {
         mDatabase.beginTransaction();
         try {
             mDatabase.delete(TomahawkSQLiteHelper.TABLE_MEDIA, "1", null);
+            // Unchanged directories aren't listed again, so their fingerprints have to go as well
+            mDatabase.delete(TomahawkSQLiteHelper.TABLE_MEDIADIRFINGERPRINTS, "1", null);
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * @return the {@link MediaDirFingerprint}s of all directories that have been walked during
+     * the last finished media scan, mapped to their path
+     */
+    public synchronized Map<String, MediaDirFingerprint> getMediaDirFingerprints() {
+        Map<String, MediaDirFingerprint> fingerprints = new HashMap<>();
+        Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_MEDIADIRFINGERPRINTS,
+                new String[]{TomahawkSQLiteHelper.MEDIADIRFINGERPRINTS_PATH,
+                        TomahawkSQLiteHelper.MEDIADIRFINGERPRINTS_LASTMODIFIED},
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                MediaDirFingerprint fingerprint = new MediaDirFingerprint();
+                fingerprint.path = cursor.getString(0);
+                fingerprint.lastModified = cursor.getLong(1);
+                fingerprints.put(fingerprint.path, fingerprint);
+            }
+        } finally {
+            cursor.close();
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Replaces all stored {@link MediaDirFingerprint}s with the given ones
+     */
+    public synchronized void storeMediaDirFingerprints(
+            Collection<MediaDirFingerprint> fingerprints) {
+        mDatabase.beginTransaction();
+        try {
+            mDatabase.delete(TomahawkSQLiteHelper.TABLE_MEDIADIRFINGERPRINTS, "1", null);
+            SQLiteStatement insert = mDatabase.compileStatement("INSERT OR REPLACE INTO "
+                    + TomahawkSQLiteHelper.TABLE_MEDIADIRFINGERPRINTS + " ("
+                    + TomahawkSQLiteHelper.MEDIADIRFINGERPRINTS_PATH + ", "
+                    + TomahawkSQLiteHelper.MEDIADIRFINGERPRINTS_LASTMODIFIED
+                    + ") VALUES (?, ?)");
+            for (MediaDirFingerprint fingerprint : fingerprints) {
+                insert.bindString(1, fingerprint.path);
+                insert.bindLong(2, fingerprint.lastModified);
+                insert.executeInsert();
+            }
+            insert.close();
             mDatabase.setTransactionSuccessful();
         } finally {
             mDatabase.endTransaction();
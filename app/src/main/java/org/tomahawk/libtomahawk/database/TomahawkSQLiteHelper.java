@@ -77,6 +77,8 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
 
     public static final String TRACKS_COLUMN_PLAYLISTENTRYINDEX = "playlistentryindex";
 
+    public static final String INDEX_TRACKS_PLAYLISTID = "tracks_playlistid_index";
+
     public static final String TABLE_SEARCHHISTORY = "searchhistory";
 
     public static final String SEARCHHISTORY_COLUMN_ID = BaseColumns._ID;
@@ -167,12 +169,18 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
 
     public static final String MEDIADIRS_BLACKLISTED = "blacklisted";
 
+    public static final String TABLE_MEDIADIRFINGERPRINTS = "mediadirfingerprints";
+
+    public static final String MEDIADIRFINGERPRINTS_PATH = "path";
+
+    public static final String MEDIADIRFINGERPRINTS_LASTMODIFIED = "last_modified";
+
 
     public static final String TABLE_ALBUMS = "albums"; //Legacy
 
     private static final String DATABASE_NAME = "userplaylists.db";
 
-    private static final int DATABASE_VERSION = 20;
+    private static final int DATABASE_VERSION = 22;
 
     // Database creation sql statements
     private static final String CREATE_TABLE_PLAYLISTS =
@@ -200,6 +208,10 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
                     + " REFERENCES `" + TABLE_PLAYLISTS + "` (`" + PLAYLISTS_COLUMN_ID
                     + "`));";
 
+    private static final String CREATE_INDEX_TRACKS_PLAYLISTID =
+            "CREATE INDEX IF NOT EXISTS `" + INDEX_TRACKS_PLAYLISTID + "` ON `" + TABLE_TRACKS
+                    + "` (`" + TRACKS_COLUMN_PLAYLISTID + "`);";
+
     private static final String CREATE_TABLE_SEARCHHISTORY =
             "CREATE TABLE `" + TABLE_SEARCHHISTORY + "` (  `"
                     + SEARCHHISTORY_COLUMN_ID + "` INTEGER PRIMARY KEY AUTOINCREMENT, `"
@@ -257,6 +269,12 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
             + MEDIADIRS_BLACKLISTED + " INTEGER "
             + ");";
 
+    private static final String CREATE_TABLE_MEDIADIRFINGERPRINTS = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_MEDIADIRFINGERPRINTS + " ("
+            + MEDIADIRFINGERPRINTS_PATH + " TEXT PRIMARY KEY NOT NULL, "
+            + MEDIADIRFINGERPRINTS_LASTMODIFIED + " INTEGER"
+            + ");";
+
     private static final String CREATE_TABLE_STATIONS =
             "CREATE TABLE `" + TABLE_STATIONS + "` (  `"
                     + STATIONS_COLUMN_ID + "` TEXT PRIMARY KEY, `"
@@ -275,6 +293,7 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
     public void onCreate(SQLiteDatabase database) {
         database.execSQL(CREATE_TABLE_PLAYLISTS);
         database.execSQL(CREATE_TABLE_TRACKS);
+        database.execSQL(CREATE_INDEX_TRACKS_PLAYLISTID);
         database.execSQL(CREATE_TABLE_SEARCHHISTORY);
         database.execSQL(CREATE_TABLE_INFOSYSTEMOPLOGINFO);
         database.execSQL(CREATE_TABLE_INFOSYSTEMOPLOG);
@@ -282,6 +301,7 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
         database.execSQL(CREATE_TABLE_LOVED_ARTISTS);
         database.execSQL(CREATE_TABLE_MEDIA);
         database.execSQL(CREATE_TABLE_MEDIADIRS);
+        database.execSQL(CREATE_TABLE_MEDIADIRFINGERPRINTS);
         database.execSQL(CREATE_TABLE_STATIONS);
     }
 
@@ -300,6 +320,7 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
             db.execSQL("DROP TABLE IF EXISTS `" + TABLE_LOVED_ARTISTS + "`;");
             db.execSQL("DROP TABLE IF EXISTS `" + TABLE_MEDIA + "`;");
             db.execSQL("DROP TABLE IF EXISTS `" + TABLE_MEDIADIRS + "`;");
+            db.execSQL("DROP TABLE IF EXISTS `" + TABLE_MEDIADIRFINGERPRINTS + "`;");
             onCreate(db);
         } else {
             if (oldVersion < 13) {
@@ -323,6 +344,12 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
             if (oldVersion < 20) {
                 db.execSQL(CREATE_TABLE_STATIONS);
             }
+            if (oldVersion < 21) {
+                db.execSQL(CREATE_TABLE_MEDIADIRFINGERPRINTS);
+            }
+            if (oldVersion < 22) {
+                db.execSQL(CREATE_INDEX_TRACKS_PLAYLISTID);
+            }
         }
     }
 
@@ -35,32 +35,38 @@ public class UserCollectionDb extends CollectionDb {
     }
 
     public void addArtists(List<Artist> artists, List<Long> lastModifieds) {
-        mDb.beginTransaction();
-        for (int i = 0, artistsSize = artists.size(); i < artistsSize; i++) {
-            Artist artist = artists.get(i);
-            ContentValues values = new ContentValues();
-            values.put(ARTISTS_ARTIST, artist.getName());
-            values.put(ARTISTS_ARTISTDISAMBIGUATION, "");
-            values.put(ARTISTS_TYPE, TYPE_HATCHET_EXPLICIT);
-            long lastModified;
-            if (lastModifieds != null && i < lastModifieds.size()) {
-                lastModified = lastModifieds.get(i);
-            } else {
-                lastModified = Long.MAX_VALUE;
+        synchronized (mWriteLock) {
+            mDb.beginTransaction();
+            for (int i = 0, artistsSize = artists.size(); i < artistsSize; i++) {
+                Artist artist = artists.get(i);
+                ContentValues values = new ContentValues();
+                values.put(ARTISTS_ARTIST, artist.getName());
+                values.put(ARTISTS_ARTISTDISAMBIGUATION, "");
+                values.put(ARTISTS_TYPE, TYPE_HATCHET_EXPLICIT);
+                long lastModified;
+                if (lastModifieds != null && i < lastModifieds.size()) {
+                    lastModified = lastModifieds.get(i);
+                } else {
+                    lastModified = Long.MAX_VALUE;
+                }
+                values.put(ARTISTS_LASTMODIFIED, lastModified);
+                mDb.insert(TABLE_ARTISTS, null, values);
             }
-            values.put(ARTISTS_LASTMODIFIED, lastModified);
-            mDb.insert(TABLE_ARTISTS, null, values);
+            mDb.setTransactionSuccessful();
+            mDb.endTransaction();
+            bumpBrowseRevision();
         }
-        mDb.setTransactionSuccessful();
-        mDb.endTransaction();
     }
 
     public void remove(Artist artist) {
-        mDb.beginTransaction();
-        mDb.delete(TABLE_ARTISTS, ARTISTS_ARTIST + " = ? AND " + ARTISTS_TYPE + " = ?",
-                new String[]{artist.getName(), String.valueOf(TYPE_HATCHET_EXPLICIT)});
-        mDb.setTransactionSuccessful();
-        mDb.endTransaction();
+        synchronized (mWriteLock) {
+            mDb.beginTransaction();
+            mDb.delete(TABLE_ARTISTS, ARTISTS_ARTIST + " = ? AND " + ARTISTS_TYPE + " = ?",
+                    new String[]{artist.getName(), String.valueOf(TYPE_HATCHET_EXPLICIT)});
+            mDb.setTransactionSuccessful();
+            mDb.endTransaction();
+            bumpBrowseRevision();
+        }
     }
 
     /**
@@ -80,53 +86,59 @@ public class UserCollectionDb extends CollectionDb {
     }
 
     public void addAlbums(List<Album> albums, List<Long> lastModifieds) {
-        // Add the album's artist as an implicitly loved entry
-        mDb.beginTransaction();
-        for (Album album : albums) {
-            ContentValues values = new ContentValues();
-            values.put(ARTISTS_ARTIST, album.getArtist().getName());
-            values.put(ARTISTS_ARTISTDISAMBIGUATION, "");
-            values.put(ARTISTS_TYPE, TYPE_HATCHET_IMPLICIT);
-            values.put(ARTISTS_LASTMODIFIED, Long.MAX_VALUE);
-            mDb.insert(TABLE_ARTISTS, null, values);
-        }
-        mDb.setTransactionSuccessful();
-        mDb.endTransaction();
+        synchronized (mWriteLock) {
+            // Add the album's artist as an implicitly loved entry
+            mDb.beginTransaction();
+            for (Album album : albums) {
+                ContentValues values = new ContentValues();
+                values.put(ARTISTS_ARTIST, album.getArtist().getName());
+                values.put(ARTISTS_ARTISTDISAMBIGUATION, "");
+                values.put(ARTISTS_TYPE, TYPE_HATCHET_IMPLICIT);
+                values.put(ARTISTS_LASTMODIFIED, Long.MAX_VALUE);
+                mDb.insert(TABLE_ARTISTS, null, values);
+            }
+            mDb.setTransactionSuccessful();
+            mDb.endTransaction();
 
-        // Add the album as an explicitly loved entry
-        mDb.beginTransaction();
-        for (int i = 0, albumsSize = albums.size(); i < albumsSize; i++) {
-            Album album = albums.get(i);
-            ContentValues values = new ContentValues();
-            values.put(ALBUMS_ALBUM, album.getName());
-            values.put(ALBUMS_ALBUMARTISTID,
-                    getArtistId(album.getArtist().getName(), TYPE_HATCHET_IMPLICIT));
-            values.put(ALBUMS_TYPE, TYPE_HATCHET_EXPLICIT);
-            long lastModified;
-            if (lastModifieds != null && i < lastModifieds.size()) {
-                lastModified = lastModifieds.get(i);
-            } else {
-                lastModified = Long.MAX_VALUE;
+            // Add the album as an explicitly loved entry
+            mDb.beginTransaction();
+            for (int i = 0, albumsSize = albums.size(); i < albumsSize; i++) {
+                Album album = albums.get(i);
+                ContentValues values = new ContentValues();
+                values.put(ALBUMS_ALBUM, album.getName());
+                values.put(ALBUMS_ALBUMARTISTID,
+                        getArtistId(album.getArtist().getName(), TYPE_HATCHET_IMPLICIT));
+                values.put(ALBUMS_TYPE, TYPE_HATCHET_EXPLICIT);
+                long lastModified;
+                if (lastModifieds != null && i < lastModifieds.size()) {
+                    lastModified = lastModifieds.get(i);
+                } else {
+                    lastModified = Long.MAX_VALUE;
+                }
+                values.put(ALBUMS_LASTMODIFIED, lastModified);
+                mDb.insert(TABLE_ALBUMS, null, values);
             }
-            values.put(ALBUMS_LASTMODIFIED, lastModified);
-            mDb.insert(TABLE_ALBUMS, null, values);
+            mDb.setTransactionSuccessful();
+            mDb.endTransaction();
+            bumpBrowseRevision();
         }
-        mDb.setTransactionSuccessful();
-        mDb.endTransaction();
     }
 
     public void remove(Album album) {
-        mDb.beginTransaction();
-        int albumArtistId = getArtistId(album.getArtist().getName(), TYPE_HATCHET_IMPLICIT);
-        mDb.delete(TABLE_ARTISTS, ARTISTS_ARTIST + " = ? AND " + ARTISTS_TYPE + " = ?",
-                new String[]{album.getArtist().getName(),
-                        String.valueOf(TYPE_HATCHET_IMPLICIT)});
-        mDb.delete(TABLE_ALBUMS, ALBUMS_ALBUM + " = ? AND " + ALBUMS_ALBUMARTISTID + " = ? AND "
-                        + ALBUMS_TYPE + " = ?",
-                new String[]{album.getName(), String.valueOf(albumArtistId),
-                        String.valueOf(TYPE_HATCHET_EXPLICIT)});
-        mDb.setTransactionSuccessful();
-        mDb.endTransaction();
+        synchronized (mWriteLock) {
+            mDb.beginTransaction();
+            int albumArtistId = getArtistId(album.getArtist().getName(), TYPE_HATCHET_IMPLICIT);
+            mDb.delete(TABLE_ARTISTS, ARTISTS_ARTIST + " = ? AND " + ARTISTS_TYPE + " = ?",
+                    new String[]{album.getArtist().getName(),
+                            String.valueOf(TYPE_HATCHET_IMPLICIT)});
+            mDb.delete(TABLE_ALBUMS, ALBUMS_ALBUM + " = ? AND " + ALBUMS_ALBUMARTISTID + " = ? AND "
+                            + ALBUMS_TYPE + " = ?",
+                    new String[]{album.getName(), String.valueOf(albumArtistId),
+                            String.valueOf(TYPE_HATCHET_EXPLICIT)});
+            mDb.setTransactionSuccessful();
+            mDb.endTransaction();
+            bumpBrowseRevision();
+        }
     }
 
     /**
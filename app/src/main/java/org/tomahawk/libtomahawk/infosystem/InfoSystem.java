@@ -17,6 +17,7 @@
  */
 package org.tomahawk.libtomahawk.infosystem;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -41,14 +42,23 @@ import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.libtomahawk.utils.GsonHelper;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.utils.IdGenerator;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import de.greenrobot.event.EventBus;
@@ -97,6 +107,59 @@ public class InfoSystem {
     // LoggedOps waiting to be sent as soon as mPlaylistsLoggedOpsMap is empty
     private final ArrayList<InfoRequestData> mQueuedLoggedOps = new ArrayList<>();
 
+    // The id of the most recent loggedOp that has been read from the op log. The op log is only
+    // being read incrementally from here on.
+    private int mLoggedOpsWatermark = 0;
+
+    // LoggedOps that have been read from the op log, but haven't been sent successfully yet
+    private final List<InfoRequestData> mUnsentLoggedOps = new ArrayList<>();
+
+    private static final long RETRY_DELAY_MIN = 10 * 1000;
+
+    private static final long RETRY_DELAY_MAX = 30 * 60 * 1000;
+
+    private long mRetryDelay = 0;
+
+    private boolean mRetryScheduled;
+
+    private final Handler mRetryHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable mRetryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            ThreadManager.get().execute(
+                    new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_INFOSYSTEM_MEDIUM) {
+                        @Override
+                        public void run() {
+                            synchronized (InfoSystem.this) {
+                                mRetryScheduled = false;
+                            }
+                            sendLoggedOps(AuthenticatorManager.get().getAuthenticatorUtils(
+                                    TomahawkApp.PLUGINNAME_HATCHET));
+                        }
+                    });
+        }
+    };
+
+    // The requestId of the now-playing update that is currently being sent
+    private String mNowPlayingRequestId;
+
+    // Only the most recent now-playing update that is waiting to be sent is of any interest
+    private InfoRequestData mPendingNowPlaying;
+
+    private AuthenticatorUtils mPendingNowPlayingAuthUtils;
+
+    // Playback log entries are being group-committed to the op log, so that scrobbling doesn't
+    // cause a database transaction on every track change
+    private final PlaybackLogJournal mPlaybackLogJournal = new PlaybackLogJournal(
+            new PlaybackLogJournal.CommitListener() {
+                @Override
+                public void onCommitted(int count) {
+                    sendLoggedOps(AuthenticatorManager.get().getAuthenticatorUtils(
+                            TomahawkApp.PLUGINNAME_HATCHET));
+                }
+            });
+
     private Query mLastPlaybackLogEntry = null;
 
     private Query mNowPlaying = null;
@@ -430,12 +493,17 @@ public class InfoSystem {
             InfoRequestData infoRequestData = new InfoRequestData(requestId,
                     InfoRequestData.INFOREQUESTDATA_TYPE_PLAYBACKLOGENTRIES, null,
                     InfoRequestData.HTTPTYPE_POST, jsonString);
-            DatabaseHelper.get().addOpToInfoSystemOpLog(infoRequestData,
-                    (int) (timeStamp / 1000));
-            sendLoggedOps(authenticatorUtils);
+            mPlaybackLogJournal.append(infoRequestData, (int) (timeStamp / 1000));
         }
     }
 
+    /**
+     * Synchronously write all journaled playback log entries to the op log
+     */
+    public void flushPlaybackLog() {
+        mPlaybackLogJournal.flush();
+    }
+
     public void sendNowPlayingPostStruct(AuthenticatorUtils authenticatorUtils, Query query) {
         if (mNowPlaying != query) {
             sendPlaybackEntryPostStruct(authenticatorUtils);
@@ -461,6 +529,21 @@ public class InfoSystem {
             InfoRequestData infoRequestData = new InfoRequestData(requestId,
                     InfoRequestData.INFOREQUESTDATA_TYPE_PLAYBACKLOGENTRIES, null,
                     InfoRequestData.HTTPTYPE_POST, jsonString);
+            sendNowPlaying(infoRequestData, authenticatorUtils);
+        }
+    }
+
+    /**
+     * Sends the given now-playing update. If another one is still being sent, the given update
+     * replaces any other pending one and is sent as soon as the current request has finished.
+     */
+    private synchronized void sendNowPlaying(InfoRequestData infoRequestData,
+            AuthenticatorUtils authenticatorUtils) {
+        if (mNowPlayingRequestId != null) {
+            mPendingNowPlaying = infoRequestData;
+            mPendingNowPlayingAuthUtils = authenticatorUtils;
+        } else {
+            mNowPlayingRequestId = infoRequestData.getRequestId();
             send(infoRequestData, authenticatorUtils);
         }
     }
@@ -595,6 +678,47 @@ public class InfoSystem {
         sendLoggedOps(authenticatorUtils);
     }
 
+    public boolean cancelRelationshipPostStruct(Query query) {
+        return cancelRelationshipPostStruct(null, query.getName(), query.getArtist().getName(),
+                null);
+    }
+
+    public boolean cancelRelationshipPostStruct(Artist artist) {
+        return cancelRelationshipPostStruct(null, null, artist.getName(), null);
+    }
+
+    public boolean cancelRelationshipPostStruct(Album album) {
+        return cancelRelationshipPostStruct(null, null, album.getArtist().getName(),
+                album.getName());
+    }
+
+    /**
+     * Removes every matching relationship POST that hasn't been sent to Hatchet yet. This way a
+     * love followed by an unlove while being offline doesn't result in any request at all.
+     *
+     * @return whether or not an unsent relationship POST has been removed
+     */
+    public synchronized boolean cancelRelationshipPostStruct(String user, String track,
+            String artist, String album) {
+        readLoggedOps();
+        String jsonString =
+                buildRelationshipPostStruct(user, track, artist, album).getJsonStringToSend();
+        List<InfoRequestData> removedOps = new ArrayList<>();
+        for (InfoRequestData loggedOp : mUnsentLoggedOps) {
+            if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_RELATIONSHIPS
+                    && loggedOp.getHttpType() == InfoRequestData.HTTPTYPE_POST
+                    && jsonString.equals(loggedOp.getJsonStringToSend())) {
+                removedOps.add(loggedOp);
+            }
+        }
+        if (!removedOps.isEmpty()) {
+            mUnsentLoggedOps.removeAll(removedOps);
+            DatabaseHelper.get().removeOpsFromInfoSystemOpLog(removedOps);
+            return true;
+        }
+        return false;
+    }
+
     public void deleteRelationship(AuthenticatorUtils authenticatorUtils, String relationshipId) {
         long timeStamp = System.currentTimeMillis();
         String requestId = IdGenerator.getSessionUniqueStringId();
@@ -642,11 +766,13 @@ public class InfoSystem {
 
 
     public synchronized void sendLoggedOps(AuthenticatorUtils authenticatorUtils) {
-        List<InfoRequestData> loggedOps = DatabaseHelper.get().getLoggedOps();
-        for (InfoRequestData loggedOp : loggedOps) {
-            verifyLoggedOp(loggedOp);
+        readLoggedOps();
+        if (mRetryScheduled) {
+            // We're backing off. All unsent loggedOps will be sent once the retry is due.
+            return;
         }
-        loggedOps = DatabaseHelper.get().getLoggedOps();
+        List<InfoRequestData> loggedOps = coalesceLoggedOps(mUnsentLoggedOps);
+        mUnsentLoggedOps.clear();
         for (InfoRequestData loggedOp : loggedOps) {
             if (!mLoggedOpsMap.containsKey(loggedOp.getLoggedOpId())) {
                 mLoggedOpsMap.put(loggedOp.getLoggedOpId(), loggedOp);
@@ -666,11 +792,157 @@ public class InfoSystem {
         trySendingQueuedOps();
     }
 
+    /**
+     * Reads all loggedOps that have been added to the op log since the last call and adds them to
+     * mUnsentLoggedOps
+     */
+    private synchronized void readLoggedOps() {
+        List<InfoRequestData> loggedOps = DatabaseHelper.get().getLoggedOps(mLoggedOpsWatermark);
+        while (!loggedOps.isEmpty()) {
+            for (InfoRequestData loggedOp : loggedOps) {
+                mLoggedOpsWatermark = Math.max(mLoggedOpsWatermark, loggedOp.getLoggedOpId());
+                if (verifyLoggedOp(loggedOp)) {
+                    mUnsentLoggedOps.add(loggedOp);
+                }
+            }
+            // Converted loggedOps have been logged again with a new id, so we have to read those
+            loggedOps = DatabaseHelper.get().getLoggedOps(mLoggedOpsWatermark);
+        }
+    }
+
+    /**
+     * Removes redundant loggedOps and merges compatible ones, so that as few requests as possible
+     * have to be sent. The changes are being persisted in the op log.
+     *
+     * @return the loggedOps that should actually be sent, in the order in which they have been
+     * logged
+     */
+    private List<InfoRequestData> coalesceLoggedOps(List<InfoRequestData> unsentLoggedOps) {
+        List<InfoRequestData> loggedOps = new ArrayList<>(unsentLoggedOps);
+        Collections.sort(loggedOps, new Comparator<InfoRequestData>() {
+            @Override
+            public int compare(InfoRequestData lhs, InfoRequestData rhs) {
+                return lhs.getLoggedOpId() < rhs.getLoggedOpId() ? -1
+                        : (lhs.getLoggedOpId() == rhs.getLoggedOpId() ? 0 : 1);
+            }
+        });
+
+        // Playlists that have been created and deleted again without ever reaching Hatchet
+        Set<String> createdPlaylistIds = new HashSet<>();
+        Set<String> discardedPlaylistIds = new HashSet<>();
+        for (InfoRequestData loggedOp : loggedOps) {
+            if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS) {
+                String localId = getPlaylistLocalId(loggedOp);
+                if (loggedOp.getHttpType() == InfoRequestData.HTTPTYPE_POST) {
+                    createdPlaylistIds.add(localId);
+                } else if (loggedOp.getHttpType() == InfoRequestData.HTTPTYPE_DELETE
+                        && createdPlaylistIds.contains(localId)) {
+                    discardedPlaylistIds.add(localId);
+                }
+            }
+        }
+
+        List<InfoRequestData> result = new ArrayList<>();
+        List<InfoRequestData> updatedOps = new ArrayList<>();
+        List<InfoRequestData> removedOps = new ArrayList<>();
+        Set<String> relationshipJsonStrings = new HashSet<>();
+        Map<String, InfoRequestData> entriesPosts = new HashMap<>();
+        for (InfoRequestData loggedOp : loggedOps) {
+            String localId = getPlaylistLocalId(loggedOp);
+            if (localId != null && discardedPlaylistIds.contains(localId)) {
+                removedOps.add(loggedOp);
+                continue;
+            }
+            if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_RELATIONSHIPS
+                    && loggedOp.getHttpType() == InfoRequestData.HTTPTYPE_POST) {
+                if (!relationshipJsonStrings.add(loggedOp.getJsonStringToSend())) {
+                    // The exact same relationship is already being posted
+                    removedOps.add(loggedOp);
+                    continue;
+                }
+            } else if (loggedOp.getType()
+                    == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS_PLAYLISTENTRIES
+                    && localId != null) {
+                if (loggedOp.getHttpType() == InfoRequestData.HTTPTYPE_POST) {
+                    InfoRequestData target = entriesPosts.get(localId);
+                    if (target != null && mergePlaylistEntriesPostStructs(target, loggedOp)) {
+                        removedOps.add(loggedOp);
+                        if (!updatedOps.contains(target)) {
+                            updatedOps.add(target);
+                        }
+                        continue;
+                    }
+                    entriesPosts.put(localId, loggedOp);
+                } else {
+                    // We must never merge playlist entries across a deletion
+                    entriesPosts.remove(localId);
+                }
+            } else if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS
+                    && localId != null) {
+                entriesPosts.remove(localId);
+            }
+            result.add(loggedOp);
+        }
+        if (!updatedOps.isEmpty() || !removedOps.isEmpty()) {
+            Log.d(TAG, "coalesceLoggedOps - merged " + updatedOps.size() + " and removed "
+                    + removedOps.size() + " of " + loggedOps.size() + " loggedOps");
+            DatabaseHelper.get().coalesceOpsInInfoSystemOpLog(updatedOps, removedOps);
+        }
+        return result;
+    }
+
+    private static String getPlaylistLocalId(InfoRequestData loggedOp) {
+        QueryParams params = loggedOp.getQueryParams();
+        return params != null ? params.playlist_local_id : null;
+    }
+
+    /**
+     * Appends the playlist entries of the given source struct to the given target struct
+     *
+     * @return whether or not both structs could be merged
+     */
+    private static boolean mergePlaylistEntriesPostStructs(InfoRequestData target,
+            InfoRequestData source) {
+        JsonElement targetElement =
+                GsonHelper.get().fromJson(target.getJsonStringToSend(), JsonElement.class);
+        JsonElement sourceElement =
+                GsonHelper.get().fromJson(source.getJsonStringToSend(), JsonElement.class);
+        if (targetElement instanceof JsonObject && sourceElement instanceof JsonObject) {
+            JsonElement targetEntries = ((JsonObject) targetElement).get("playlistEntries");
+            JsonElement sourceEntries = ((JsonObject) sourceElement).get("playlistEntries");
+            if (targetEntries instanceof JsonArray && sourceEntries instanceof JsonArray) {
+                ((JsonArray) targetEntries).addAll((JsonArray) sourceEntries);
+                target.setJsonStringToSend(GsonHelper.get().toJson(targetElement));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void scheduleRetry() {
+        if (!mRetryScheduled) {
+            mRetryDelay = mRetryDelay == 0 ? RETRY_DELAY_MIN
+                    : Math.min(mRetryDelay * 2, RETRY_DELAY_MAX);
+            mRetryScheduled = true;
+            Log.d(TAG, "scheduleRetry - retrying to send " + mUnsentLoggedOps.size()
+                    + " loggedOps in " + mRetryDelay + "ms");
+            mRetryHandler.postDelayed(mRetryRunnable, mRetryDelay);
+        }
+    }
+
     public synchronized void onLoggedOpsSent(ArrayList<String> doneRequestsIds, boolean discard) {
         List<InfoRequestData> loggedOps = new ArrayList<>();
         HashSet<Integer> requestTypes = new HashSet<>();
         HashSet<String> playlistIds = new HashSet<>();
         for (String doneRequestId : doneRequestsIds) {
+            if (doneRequestId.equals(mNowPlayingRequestId)) {
+                mNowPlayingRequestId = null;
+                if (mPendingNowPlaying != null) {
+                    InfoRequestData pendingNowPlaying = mPendingNowPlaying;
+                    mPendingNowPlaying = null;
+                    sendNowPlaying(pendingNowPlaying, mPendingNowPlayingAuthUtils);
+                }
+            }
             if (mSentRequests.containsKey(doneRequestId)) {
                 InfoRequestData loggedOp = mSentRequests.get(doneRequestId);
                 loggedOps.add(loggedOp);
@@ -692,9 +964,18 @@ public class InfoSystem {
                     }
                 }
                 mLoggedOpsMap.remove(loggedOp.getLoggedOpId());
+                if (!discard && loggedOp.getLoggedOpId() > 0) {
+                    // The loggedOp has to be retried, since it won't be read from the op log again
+                    mUnsentLoggedOps.add(loggedOp);
+                }
             }
         }
-        if (discard) {
+        if (!discard) {
+            if (!mUnsentLoggedOps.isEmpty()) {
+                scheduleRetry();
+            }
+        } else {
+            mRetryDelay = 0;
             for (InfoRequestData loggedOp : loggedOps) {
                 mPlaylistsLoggedOpsMap.remove(loggedOp.getLoggedOpId());
             }
@@ -767,8 +1048,11 @@ public class InfoSystem {
     /**
      * Verify if the given loggedOp needs to be converted to a newer version. This is needed because
      * the Hatchet API changes.
+     *
+     * @return false if the given loggedOp has been removed from the op log or has been replaced by
+     * a converted one
      */
-    private void verifyLoggedOp(InfoRequestData loggedOp) {
+    private boolean verifyLoggedOp(InfoRequestData loggedOp) {
         InfoRequestData convertedLogOp = null;
         if (loggedOp.getType() == 1300) { // old v1 way of posting a socialAction
             JsonElement element =
@@ -787,6 +1071,7 @@ public class InfoSystem {
                     // associated relationShipId. Therefore we are unable to delete this particular
                     // relationship.
                     DatabaseHelper.get().removeOpFromInfoSystemOpLog(loggedOp);
+                    return false;
                 }
             }
         } else if (loggedOp.getType() == 1001) {
@@ -827,7 +1112,9 @@ public class InfoSystem {
             DatabaseHelper.get().removeOpFromInfoSystemOpLog(loggedOp);
             DatabaseHelper.get().addOpToInfoSystemOpLog(convertedLogOp,
                     (int) System.currentTimeMillis() / 1000);
+            return false;
         }
+        return true;
     }
 
     private String getAsString(JsonObject object, String memberName) {
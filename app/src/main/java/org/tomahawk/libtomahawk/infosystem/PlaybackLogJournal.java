@@ -0,0 +1,169 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2016, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.infosystem;
+
+import org.tomahawk.libtomahawk.database.DatabaseHelper;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A write-behind journal for playback log entries. Instead of opening a transaction for every
+ * single scrobble on the playback path, the entries are buffered in a fixed-size ring buffer and
+ * group-committed to the InfoSystem-OpLog table, either as soon as {@link #GROUP_COMMIT_SIZE}
+ * entries have been appended or after {@link #GROUP_COMMIT_DELAY} ms have passed.
+ */
+class PlaybackLogJournal {
+
+    private static final String TAG = PlaybackLogJournal.class.getSimpleName();
+
+    private static final int GROUP_COMMIT_SIZE = 10;
+
+    private static final long GROUP_COMMIT_DELAY = 10 * 1000;
+
+    // Leaves some headroom for entries that are being appended while a commit is pending
+    private static final int CAPACITY = GROUP_COMMIT_SIZE * 4;
+
+    public interface CommitListener {
+
+        void onCommitted(int count);
+    }
+
+    private final InfoRequestData[] mOps = new InfoRequestData[CAPACITY];
+
+    private final int[] mTimeStamps = new int[CAPACITY];
+
+    private int mHead;
+
+    private int mSize;
+
+    private boolean mCommitScheduled;
+
+    // Makes sure that group commits are being written in the order they've been drained
+    private final Object mCommitLock = new Object();
+
+    private final CommitListener mCommitListener;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable mCommitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            ThreadManager.get().execute(
+                    new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_INFOSYSTEM_MEDIUM) {
+                        @Override
+                        public void run() {
+                            commit(true);
+                        }
+                    });
+        }
+    };
+
+    PlaybackLogJournal(CommitListener commitListener) {
+        mCommitListener = commitListener;
+    }
+
+    /**
+     * Append the given operation to this journal. Never touches the database itself, unless the
+     * ring buffer is full because the pending group commit hasn't been executed yet.
+     *
+     * @param op        the InfoRequestData that should be stored in the op log
+     * @param timeStamp a timestamp indicating when this operation has been added
+     */
+    public void append(InfoRequestData op, int timeStamp) {
+        boolean full;
+        synchronized (this) {
+            full = mSize == CAPACITY;
+            if (!full) {
+                int index = (mHead + mSize) % CAPACITY;
+                mOps[index] = op;
+                mTimeStamps[index] = timeStamp;
+                mSize++;
+                if (mSize >= GROUP_COMMIT_SIZE) {
+                    scheduleCommit(0);
+                } else {
+                    scheduleCommit(GROUP_COMMIT_DELAY);
+                }
+            }
+        }
+        if (full) {
+            Log.d(TAG, "append - journal is full, committing synchronously");
+            commit(true);
+            append(op, timeStamp);
+        }
+    }
+
+    /**
+     * Synchronously write all journaled operations to the op log. Should be called on shutdown, so
+     * that no playback log entries are being lost.
+     */
+    public void flush() {
+        synchronized (this) {
+            mHandler.removeCallbacks(mCommitRunnable);
+            mCommitScheduled = false;
+        }
+        commit(false);
+    }
+
+    private void scheduleCommit(long delay) {
+        if (delay == 0) {
+            mHandler.removeCallbacks(mCommitRunnable);
+            mHandler.post(mCommitRunnable);
+            mCommitScheduled = true;
+        } else if (!mCommitScheduled) {
+            mHandler.postDelayed(mCommitRunnable, delay);
+            mCommitScheduled = true;
+        }
+    }
+
+    private void commit(boolean notifyListener) {
+        synchronized (mCommitLock) {
+            List<InfoRequestData> ops;
+            int[] timeStamps;
+            synchronized (this) {
+                mCommitScheduled = false;
+                if (mSize == 0) {
+                    return;
+                }
+                ops = new ArrayList<>(mSize);
+                timeStamps = new int[mSize];
+                for (int i = 0; i < timeStamps.length; i++) {
+                    int index = (mHead + i) % CAPACITY;
+                    ops.add(mOps[index]);
+                    timeStamps[i] = mTimeStamps[index];
+                    mOps[index] = null;
+                }
+                mHead = (mHead + mSize) % CAPACITY;
+                mSize = 0;
+            }
+            long time = System.currentTimeMillis();
+            DatabaseHelper.get().addOpsToInfoSystemOpLog(ops, timeStamps);
+            Log.d(TAG, "commit - committed " + ops.size() + " ops in "
+                    + (System.currentTimeMillis() - time) + "ms");
+            if (notifyListener && mCommitListener != null) {
+                mCommitListener.onCommitted(ops.size());
+            }
+        }
+    }
+}
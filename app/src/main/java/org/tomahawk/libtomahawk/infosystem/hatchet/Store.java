@@ -44,6 +44,7 @@ import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.libtomahawk.utils.GsonHelper;
 import org.tomahawk.libtomahawk.utils.ISO8601Utils;
 import org.tomahawk.libtomahawk.utils.NetworkUtils;
+import org.tomahawk.libtomahawk.utils.StringPool;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 
 import android.util.Log;
@@ -246,7 +247,7 @@ public class Store {
                     String id = getAsString(o, "id");
                     Artist artist = mCache.get(Artist.class, id);
                     if (artist == null) {
-                        String name = getAsString(o, "name");
+                        String name = StringPool.intern(getAsString(o, "name"));
                         String wiki = getAsString(o, "wikiabstract");
                         artist = Artist.get(name);
                         artist.setBio(new ListItemString(wiki));
@@ -294,7 +295,7 @@ public class Store {
                     String id = getAsString(o, "id");
                     Album album = mCache.get(Album.class, id);
                     if (album == null) {
-                        String name = getAsString(o, "name");
+                        String name = StringPool.intern(getAsString(o, "name"));
                         String artistId = getAsString(o, "artist");
                         Artist artist = findRecord(artistId, Artist.class, isBackgroundRequest);
                         album = Album.get(name, artist);
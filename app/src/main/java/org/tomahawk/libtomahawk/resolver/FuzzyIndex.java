@@ -31,6 +31,7 @@ import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.FuzzyQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
@@ -38,6 +39,7 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
 import org.tomahawk.libtomahawk.database.CollectionDb;
+import org.tomahawk.libtomahawk.resolver.models.ScriptResolverTrack;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.utils.PreferenceUtils;
 
@@ -133,6 +135,74 @@ public class FuzzyIndex {
         updateSearcherManager();
     }
 
+    /**
+     * Adds the given tracks to the index without recreating it. This must only be used for tracks
+     * that have just been added to the CollectionDb, while the index has already been up to date.
+     *
+     * @param tracks   the tracks to add
+     * @param trackIds the ids of the given tracks in the CollectionDb. Tracks with an id < 0 are
+     *                 skipped.
+     */
+    public synchronized void addToIndex(List<ScriptResolverTrack> tracks, long[] trackIds) {
+        if (!tracks.isEmpty()) {
+            try {
+                beginIndexing(false);
+                for (int i = 0; i < tracks.size(); i++) {
+                    if (trackIds[i] < 0) {
+                        continue;
+                    }
+                    ScriptResolverTrack track = tracks.get(i);
+                    Document document = new Document();
+                    document.add(new IntField("id", (int) trackIds[i], Field.Store.YES));
+                    document.add(new StringField("artist", track.artist, Field.Store.YES));
+                    document.add(new StringField("album", track.album, Field.Store.YES));
+                    document.add(new StringField("track", track.track, Field.Store.YES));
+                    mLuceneWriter.addDocument(document);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "addToIndex - " + e.getClass() + ": " + e.getLocalizedMessage());
+                // Make sure that the index is being recreated next time
+                PreferenceUtils.edit().putLong(mLastUpdateStorageKey, -2).commit();
+                endIndexing();
+                return;
+            }
+            endIndexing();
+            updateSearcherManager();
+        }
+        PreferenceUtils.edit().putLong(mLastUpdateStorageKey, System.currentTimeMillis()).commit();
+    }
+
+    /**
+     * Removes the tracks with the given ids from the index without recreating it. This must only
+     * be used for tracks that have just been removed from the CollectionDb, while the index has
+     * already been up to date.
+     *
+     * @param trackIds the ids of the removed tracks in the CollectionDb
+     */
+    public synchronized void removeFromIndex(List<Long> trackIds) {
+        if (!trackIds.isEmpty()) {
+            try {
+                beginIndexing(false);
+                org.apache.lucene.search.Query[] queries =
+                        new org.apache.lucene.search.Query[trackIds.size()];
+                for (int i = 0; i < trackIds.size(); i++) {
+                    int id = trackIds.get(i).intValue();
+                    queries[i] = NumericRangeQuery.newIntRange("id", id, id, true, true);
+                }
+                mLuceneWriter.deleteDocuments(queries);
+            } catch (IOException e) {
+                Log.e(TAG, "removeFromIndex - " + e.getClass() + ": " + e.getLocalizedMessage());
+                // Make sure that the index is being recreated next time
+                PreferenceUtils.edit().putLong(mLastUpdateStorageKey, -2).commit();
+                endIndexing();
+                return;
+            }
+            endIndexing();
+            updateSearcherManager();
+        }
+        PreferenceUtils.edit().putLong(mLastUpdateStorageKey, System.currentTimeMillis()).commit();
+    }
+
     private void updateSearcherManager() {
         Log.d(TAG, "updateSearcherManager");
         try {
@@ -225,7 +295,7 @@ public class FuzzyIndex {
             PreferenceUtils.edit().putLong(mLastUpdateStorageKey, -2).commit();
             iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
         } else {
-            iwc.setOpenMode(IndexWriterConfig.OpenMode.APPEND);
+            iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
         }
         mLuceneWriter = new IndexWriter(dir, iwc);
     }
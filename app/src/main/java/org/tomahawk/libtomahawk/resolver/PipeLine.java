@@ -26,6 +26,8 @@ import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.utils.ThreadManager;
 import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -34,6 +36,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -62,6 +67,9 @@ public class PipeLine {
 
     private static final float FULLTEXT_MINSCORE = 0f;
 
+    // Plugins that haven't registered their resolver within this time are given up on
+    private static final long PLUGIN_LOAD_TIMEOUT = 30000;
+
     private static class Holder {
 
         private static final PipeLine instance = new PipeLine();
@@ -97,23 +105,38 @@ public class PipeLine {
     private final Set<ScriptResolver> mResolvers =
             Collections.newSetFromMap(new ConcurrentHashMap<ScriptResolver, Boolean>());
 
-    private final Set<String> mWaitingUrlLookups =
-            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // URLs and queries that have been looked up/resolved while plugins were still loading
+    private final ConcurrentHashMap<String, WaitingEntry> mWaitingUrlLookups =
+            new ConcurrentHashMap<>();
 
-    private final Set<Query> mWaitingQueries =
-            Collections.newSetFromMap(new ConcurrentHashMap<Query, Boolean>());
+    private final ConcurrentHashMap<Query, WaitingEntry> mWaitingQueries =
+            new ConcurrentHashMap<>();
 
     private final Set<ScriptAccount> mLoadingPlugins =
             Collections.newSetFromMap(new ConcurrentHashMap<ScriptAccount, Boolean>());
 
+    // ScriptAccounts whose resolver is disabled and whose WebView hasn't been started yet
+    private final List<ScriptAccount> mDeferredScriptAccounts = new ArrayList<>();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private static class WaitingEntry {
+
+        // The resolvers this query or URL has already been passed to
+        private final Set<ScriptResolver> mPassedTo =
+                Collections.newSetFromMap(new ConcurrentHashMap<ScriptResolver, Boolean>());
+
+        // The plugins that were still loading when this query or URL came in
+        private final Set<ScriptAccount> mPendingPlugins =
+                Collections.newSetFromMap(new ConcurrentHashMap<ScriptAccount, Boolean>());
+    }
+
     private PipeLine() {
         try {
             String[] plugins = TomahawkApp.getContext().getAssets().list("js/resolvers");
             for (String plugin : plugins) {
                 String path = "/js/resolvers/" + plugin;
-                ScriptAccount account = new ScriptAccount(path, false);
-                mScriptAccounts.add(account);
-                mLoadingPlugins.add(account);
+                addScriptAccountLazily(new ScriptAccount(path, false));
             }
             String manualResolverDirPath = TomahawkApp.getContext().getFilesDir().getAbsolutePath()
                     + File.separator + "manualresolvers";
@@ -125,9 +148,7 @@ public class PipeLine {
                         String pluginPath = manualResolverDirPath + File.separator + plugin;
                         File pluginFile = new File(pluginPath);
                         if (pluginFile.isDirectory()) {
-                            ScriptAccount account = new ScriptAccount(pluginPath, true);
-                            mScriptAccounts.add(account);
-                            mLoadingPlugins.add(account);
+                            addScriptAccountLazily(new ScriptAccount(pluginPath, true));
                         }
                     }
                 }
@@ -137,31 +158,103 @@ public class PipeLine {
         }
     }
 
+    /**
+     * Only the metadata of the given ScriptAccount is being read right away. Its WebView is only
+     * started right away if its resolver is enabled, otherwise its startup is deferred until
+     * {@link #startAllScriptAccounts()} is being called.
+     */
+    private void addScriptAccountLazily(ScriptAccount account) {
+        if (account.getMetaData() == null) {
+            return;
+        }
+        mScriptAccounts.add(account);
+        if (account.isResolverEnabled()) {
+            startScriptAccount(account);
+        } else {
+            synchronized (mDeferredScriptAccounts) {
+                mDeferredScriptAccounts.add(account);
+            }
+        }
+    }
+
+    private void startScriptAccount(final ScriptAccount account) {
+        if (!account.isStarted()) {
+            mLoadingPlugins.add(account);
+            account.start();
+            mHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (mLoadingPlugins.contains(account)) {
+                        Log.e(TAG, "startScriptAccount - Plugin " + account.getName()
+                                + " hasn't loaded within " + PLUGIN_LOAD_TIMEOUT + "ms");
+                        onPluginLoadFailed(account);
+                    }
+                }
+            }, PLUGIN_LOAD_TIMEOUT);
+        }
+    }
+
+    /**
+     * Start all ScriptAccounts whose startup has been deferred so far. Has to be called by every
+     * screen that needs the plugins of disabled resolvers as well (e.g. to list or configure them).
+     */
+    public void startAllScriptAccounts() {
+        List<ScriptAccount> accounts;
+        synchronized (mDeferredScriptAccounts) {
+            accounts = new ArrayList<>(mDeferredScriptAccounts);
+            mDeferredScriptAccounts.clear();
+        }
+        for (ScriptAccount account : accounts) {
+            startScriptAccount(account);
+        }
+    }
+
     public static PipeLine get() {
         return Holder.instance;
     }
 
+    /**
+     * Queries and URLs that have been resolved while the given plugin was still loading haven't
+     * been passed to it yet, so we do that now.
+     */
     public void onPluginLoaded(ScriptAccount account) {
         mLoadingPlugins.remove(account);
-        if (mLoadingPlugins.isEmpty()) {
-            Log.d(TAG, "All plugins loaded. Resolving "
+        ScriptResolver resolver = account.getScriptResolver();
+        if (resolver != null) {
+            Log.d(TAG, "Plugin " + account.getName() + " loaded. Resolving "
                     + mWaitingQueries.size() + " waiting queries. Looking up "
                     + mWaitingUrlLookups.size() + " waiting URLs.");
-            for (Query query : mWaitingQueries) {
-                resolve(query);
+            // The resolver may already have been registered and invoked by resolve() or
+            // lookupUrl() in the meantime, so make sure that it's only invoked once
+            for (Map.Entry<Query, WaitingEntry> entry : mWaitingQueries.entrySet()) {
+                if (shouldResolve(resolver, entry.getKey(), false)
+                        && entry.getValue().mPassedTo.add(resolver)) {
+                    resolver.resolve(entry.getKey());
+                }
             }
-            mWaitingQueries.clear();
-            for (String url : mWaitingUrlLookups) {
-                lookupUrl(url);
+            for (Map.Entry<String, WaitingEntry> entry : mWaitingUrlLookups.entrySet()) {
+                if (entry.getValue().mPassedTo.add(resolver)) {
+                    resolver.lookupUrl(entry.getKey());
+                }
             }
-            mWaitingUrlLookups.clear();
         }
+        pruneWaiting(mWaitingQueries);
+        pruneWaiting(mWaitingUrlLookups);
+    }
+
+    /**
+     * The given plugin couldn't be loaded, so queries and URLs shouldn't wait for it any longer.
+     */
+    public void onPluginLoadFailed(ScriptAccount account) {
+        mLoadingPlugins.remove(account);
+        pruneWaiting(mWaitingQueries);
+        pruneWaiting(mWaitingUrlLookups);
     }
 
     public void addScriptAccount(ScriptAccount scriptAccount) {
         mManualScriptAccounts.add(scriptAccount);
         mScriptAccounts.add(scriptAccount);
-        mLoadingPlugins.add(scriptAccount);
+        startScriptAccount(scriptAccount);
     }
 
     public void addResolver(ScriptResolver resolver) {
@@ -193,6 +286,9 @@ public class PipeLine {
      * Get the ArrayList of all {@link org.tomahawk.libtomahawk.resolver.ScriptResolver}s
      */
     public ArrayList<ScriptResolver> getScriptResolvers() {
+        // All resolvers are being asked for (e.g. to list them in the preferences), so we can't
+        // defer the startup of any plugin any longer
+        startAllScriptAccounts();
         ArrayList<ScriptResolver> scriptResolvers = new ArrayList<>();
         for (Resolver resolver : mResolvers) {
             if (resolver instanceof ScriptResolver) {
@@ -237,19 +333,25 @@ public class PipeLine {
         final TomahawkRunnable r = new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_RESOLVING) {
             @Override
             public void run() {
-                if (!mLoadingPlugins.isEmpty()) {
-                    mWaitingQueries.add(q);
-                } else {
-                    for (ScriptResolver resolver : mResolvers) {
-                        if (shouldResolve(resolver, q, forceOnlyLocal)) {
-                            resolver.resolve(q);
-                        }
+                // Resolve against all plugins that are ready. The ones that are still loading will
+                // pick up the query as soon as they are ready.
+                Set<ScriptResolver> resolvedBy = null;
+                if (!forceOnlyLocal && !mLoadingPlugins.isEmpty()) {
+                    resolvedBy = addWaiting(mWaitingQueries, q);
+                }
+                for (ScriptResolver resolver : mResolvers) {
+                    if (shouldResolve(resolver, q, forceOnlyLocal)
+                            && (resolvedBy == null || resolvedBy.add(resolver))) {
+                        resolver.resolve(q);
                     }
-                    for (Collection collection : CollectionManager.get().getCollections()) {
-                        if (!(collection instanceof UserCollection)
-                                && shouldResolve(collection, q, forceOnlyLocal)) {
-                            ((DbCollection) collection).resolve(q);
-                        }
+                }
+                if (resolvedBy != null) {
+                    pruneWaiting(mWaitingQueries, q);
+                }
+                for (Collection collection : CollectionManager.get().getCollections()) {
+                    if (!(collection instanceof UserCollection)
+                            && shouldResolve(collection, q, forceOnlyLocal)) {
+                        ((DbCollection) collection).resolve(q);
                     }
                 }
                 if (shouldResolve(CollectionManager.get().getUserCollection(), q, forceOnlyLocal)) {
@@ -351,14 +453,55 @@ public class PipeLine {
 
     public void lookupUrl(final String url) {
         Log.d(TAG, "lookupUrl - looking up url: " + url);
+        Set<ScriptResolver> lookedUpBy = null;
         if (!mLoadingPlugins.isEmpty()) {
-            mWaitingUrlLookups.add(url);
-        } else {
-            for (Resolver resolver : mResolvers) {
-                if (resolver instanceof ScriptResolver) {
-                    ScriptResolver scriptResolver = (ScriptResolver) resolver;
-                    scriptResolver.lookupUrl(url);
-                }
+            lookedUpBy = addWaiting(mWaitingUrlLookups, url);
+        }
+        for (ScriptResolver resolver : mResolvers) {
+            if (lookedUpBy == null || lookedUpBy.add(resolver)) {
+                resolver.lookupUrl(url);
+            }
+        }
+        if (lookedUpBy != null) {
+            pruneWaiting(mWaitingUrlLookups, url);
+        }
+    }
+
+    /**
+     * @return the set of resolvers the given waiting query or URL has already been passed to
+     */
+    private <K> Set<ScriptResolver> addWaiting(ConcurrentHashMap<K, WaitingEntry> waiting,
+            K key) {
+        WaitingEntry entry = new WaitingEntry();
+        WaitingEntry existing = waiting.putIfAbsent(key, entry);
+        if (existing != null) {
+            entry = existing;
+        }
+        entry.mPendingPlugins.addAll(mLoadingPlugins);
+        return entry.mPassedTo;
+    }
+
+    /**
+     * Removes every waiting query or URL that no plugin has to pick up anymore, because all of the
+     * plugins it has been waiting for have either been loaded or given up on.
+     */
+    private <K> void pruneWaiting(ConcurrentHashMap<K, WaitingEntry> waiting) {
+        Iterator<WaitingEntry> iterator = waiting.values().iterator();
+        while (iterator.hasNext()) {
+            WaitingEntry entry = iterator.next();
+            entry.mPendingPlugins.retainAll(mLoadingPlugins);
+            if (entry.mPendingPlugins.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private <K> void pruneWaiting(ConcurrentHashMap<K, WaitingEntry> waiting, K key) {
+        WaitingEntry entry = waiting.get(key);
+        if (entry != null) {
+            entry.mPendingPlugins.retainAll(mLoadingPlugins);
+            if (entry.mPendingPlugins.isEmpty()) {
+                waiting.remove(key, entry);
             }
         }
     }
@@ -17,9 +17,12 @@
  */
 package org.tomahawk.libtomahawk.resolver;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import com.squareup.okhttp.Response;
 
@@ -38,11 +41,14 @@ import org.tomahawk.libtomahawk.resolver.plugins.ScriptResolverPluginFactory;
 import org.tomahawk.libtomahawk.utils.GsonHelper;
 import org.tomahawk.libtomahawk.utils.ImageUtils;
 import org.tomahawk.libtomahawk.utils.NetworkUtils;
+import org.tomahawk.libtomahawk.utils.StringUtils;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
 import org.tomahawk.tomahawk_android.utils.IdGenerator;
 import org.tomahawk.tomahawk_android.utils.PreferenceUtils;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
@@ -51,6 +57,7 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 import android.webkit.CookieManager;
+import android.webkit.ValueCallback;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.widget.ImageView;
@@ -59,7 +66,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -75,6 +85,13 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
 
     public final static String ENABLED_KEY = "_enabled_";
 
+    // The maximum number of ScriptJobs that are being sent to the WebView in one batch
+    private final static int MAX_JOB_BATCH_SIZE = 100;
+
+    // The maximum number of ScriptJobs that can be in flight at the same time. All other jobs have
+    // to wait in the queue until enough in-flight jobs have completed or expired.
+    private final static int MAX_IN_FLIGHT_JOBS = 100;
+
     private String mPath;
 
     private boolean mManuallyInstalled;
@@ -83,10 +100,38 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
 
     private WebView mWebView;
 
-    private HashMap<String, ScriptJob> mJobs = new HashMap<>();
+    private boolean mStarted;
+
+    // ScriptJobs that have been sent to the WebView and haven't reported back yet
+    private final ScriptJobRegistry mJobRegistry = new ScriptJobRegistry();
 
     private HashMap<String, ScriptObject> mObjects = new HashMap<>();
 
+    // ScriptJobs that have been started, but haven't been sent to the WebView yet
+    private final LinkedHashMap<String, ScriptJob> mQueuedJobs = new LinkedHashMap<>();
+
+    private boolean mQueuedJobsFlushScheduled;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable mFlushQueuedJobsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushQueuedJobs();
+        }
+    };
+
+    // The time at which mExpireJobsRunnable is scheduled to run or -1 if it isn't scheduled
+    private long mExpireJobsAt = -1;
+
+    private final Runnable mExpireJobsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mExpireJobsAt = -1;
+            expireJobs();
+        }
+    };
+
     private ScriptResolverPluginFactory mResolverPluginFactory =
             new ScriptResolverPluginFactory();
 
@@ -106,7 +151,6 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
 
     private ScriptResolverMetaData mMetaData;
 
-    @SuppressLint({"AddJavascriptInterface", "SetJavaScriptEnabled"})
     public ScriptAccount(String path, boolean manuallyInstalled) {
         String prefix = manuallyInstalled ? "file://" : "file:///android_asset";
         mPath = prefix + path;
@@ -142,7 +186,48 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
                 }
             }
         }
+    }
 
+    /**
+     * Creates this ScriptAccount's WebView and loads all of its scripts, if that hasn't been done
+     * yet. Until then only the metadata of this ScriptAccount is available.
+     */
+    public void start() {
+        synchronized (this) {
+            if (mStarted || mMetaData == null) {
+                return;
+            }
+            mStarted = true;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Log.d(TAG, "start - starting ScriptAccount:" + mName);
+                startWebView();
+            }
+        });
+    }
+
+    public synchronized boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * @return whether or not the user has enabled the resolver of this ScriptAccount. Other than
+     * {@link ScriptResolver#isEnabled()} this doesn't require the WebView to be started.
+     */
+    public boolean isResolverEnabled() {
+        Object enabled = getConfig().get(ENABLED_KEY);
+        if (enabled instanceof Boolean) {
+            return (Boolean) enabled;
+        }
+        // Enable soundcloud and jamendo by default
+        return TomahawkApp.PLUGINNAME_JAMENDO.equals(mName)
+                || TomahawkApp.PLUGINNAME_SOUNDCLOUD.equals(mName);
+    }
+
+    @SuppressLint({"AddJavascriptInterface", "SetJavaScriptEnabled"})
+    private void startWebView() {
         CookieManager.setAcceptFileSchemeCookies(true);
 
         mWebView = new WebView(TomahawkApp.getContext());
@@ -167,53 +252,48 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
             WebView.setWebContentsDebuggingEnabled(true);
         }
 
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @Override
-            public void run() {
-                //initalize WebView
-                String data = "<!DOCTYPE html>" + "<html>"
-                        + "<head><title>" + mName + "</title></head>"
-                        + "<body>"
-                        + "<script src=\"file:///android_asset/js/rsvp-latest.min.js"
-                        + "\" type=\"text/javascript\"></script>"
-                        + "<script src=\"file:///android_asset/js/cryptojs-core.js"
+        //initalize WebView
+        String data = "<!DOCTYPE html>" + "<html>"
+                + "<head><title>" + mName + "</title></head>"
+                + "<body>"
+                + "<script src=\"file:///android_asset/js/rsvp-latest.min.js"
+                + "\" type=\"text/javascript\"></script>"
+                + "<script src=\"file:///android_asset/js/cryptojs-core.js"
+                + "\" type=\"text/javascript\"></script>";
+        if (mMetaData.manifest.scripts != null) {
+            for (String scriptPath : mMetaData.manifest.scripts) {
+                data += "<script src=\"" + mPath + "/content/" + scriptPath
                         + "\" type=\"text/javascript\"></script>";
-                if (mMetaData.manifest.scripts != null) {
-                    for (String scriptPath : mMetaData.manifest.scripts) {
-                        data += "<script src=\"" + mPath + "/content/" + scriptPath
-                                + "\" type=\"text/javascript\"></script>";
-                    }
-                }
-                try {
-                    String[] cryptoJsScripts =
-                            TomahawkApp.getContext().getAssets().list("js/cryptojs");
-                    for (String scriptPath : cryptoJsScripts) {
-                        data += "<script src=\"file:///android_asset/js/cryptojs/"
-                                + scriptPath
-                                + "\" type=\"text/javascript\"></script>";
-                    }
-                } catch (IOException e) {
-                    Log.e(TAG,
-                            "ScriptResolver: " + e.getClass() + ": " + e.getLocalizedMessage());
-                }
-                data += "<script src=\"file:///android_asset/js/tomahawk_android_pre.js"
-                        + "\" type=\"text/javascript\"></script>"
-                        + "<script src=\"file:///android_asset/js/tomahawk.js"
-                        + "\" type=\"text/javascript\"></script>"
-                        + "<script src=\"file:///android_asset/js/tomahawk-infosystem.js"
-                        + "\" type=\"text/javascript\"></script>"
-                        + "<script src=\"file:///android_asset/js/tomahawk_android_post.js"
-                        + "\" type=\"text/javascript\"></script>"
-                        + "<script src=\"" + mPath + "/content/" + mMetaData.manifest.main
-                        + "\" type=\"text/javascript\"></script>"
-                        + "</body></html>";
-                mWebView.setWebViewClient(new ScriptWebViewClient(ScriptAccount.this));
-                mWebView.addJavascriptInterface(new ScriptInterface(ScriptAccount.this),
-                        SCRIPT_INTERFACE_NAME);
-                mWebView.loadDataWithBaseURL("file:///android_asset/test.html", data,
-                        "text/html", null, null);
             }
-        });
+        }
+        try {
+            String[] cryptoJsScripts =
+                    TomahawkApp.getContext().getAssets().list("js/cryptojs");
+            for (String scriptPath : cryptoJsScripts) {
+                data += "<script src=\"file:///android_asset/js/cryptojs/"
+                        + scriptPath
+                        + "\" type=\"text/javascript\"></script>";
+            }
+        } catch (IOException e) {
+            Log.e(TAG,
+                    "ScriptResolver: " + e.getClass() + ": " + e.getLocalizedMessage());
+        }
+        data += "<script src=\"file:///android_asset/js/tomahawk_android_pre.js"
+                + "\" type=\"text/javascript\"></script>"
+                + "<script src=\"file:///android_asset/js/tomahawk.js"
+                + "\" type=\"text/javascript\"></script>"
+                + "<script src=\"file:///android_asset/js/tomahawk-infosystem.js"
+                + "\" type=\"text/javascript\"></script>"
+                + "<script src=\"file:///android_asset/js/tomahawk_android_post.js"
+                + "\" type=\"text/javascript\"></script>"
+                + "<script src=\"" + mPath + "/content/" + mMetaData.manifest.main
+                + "\" type=\"text/javascript\"></script>"
+                + "</body></html>";
+        mWebView.setWebViewClient(new ScriptWebViewClient(ScriptAccount.this));
+        mWebView.addJavascriptInterface(new ScriptInterface(ScriptAccount.this),
+                SCRIPT_INTERFACE_NAME);
+        mWebView.loadDataWithBaseURL("file:///android_asset/test.html", data,
+                "text/html", null, null);
     }
 
     /**
@@ -229,6 +309,16 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
                 + "', Tomahawk.resolver.instance);");
     }
 
+    /**
+     * This method is being called, when the {@link ScriptWebViewClient} couldn't load the given
+     * .js script.
+     */
+    @Override
+    public void onWebViewClientError(String description) {
+        Log.e(TAG, "onWebViewClientError - ScriptAccount:" + mName + ", " + description);
+        PipeLine.get().onPluginLoadFailed(this);
+    }
+
     public ScriptResolver getScriptResolver() {
         return mScriptResolver;
     }
@@ -320,30 +410,172 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
         }
     }
 
-    public void startJob(final ScriptJob job) {
-        final String requestId = IdGenerator.getSessionUniqueStringId();
-        mJobs.put(requestId, job);
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
+    /**
+     * Queue the given {@link ScriptJob}. All jobs that are being started within the same tick of
+     * the main looper are sent to the WebView in one single call to
+     * Tomahawk.PluginManager.invokeBatch, as long as the in-flight limit hasn't been reached.
+     */
+    public void startJob(ScriptJob job) {
+        start();
+        String requestId = IdGenerator.getSessionUniqueStringId();
+        synchronized (mQueuedJobs) {
+            mQueuedJobs.put(requestId, job);
+            scheduleFlushQueuedJobs();
+        }
+    }
+
+    /**
+     * @return the number of ScriptJobs that are waiting to be sent to the WebView
+     */
+    public int getQueuedJobCount() {
+        synchronized (mQueuedJobs) {
+            return mQueuedJobs.size();
+        }
+    }
+
+    /**
+     * @return the number of ScriptJobs that have been sent to the WebView and are still waiting for
+     * their results
+     */
+    public int getPendingJobCount() {
+        return mJobRegistry.getPendingCount();
+    }
+
+    /**
+     * @return the number of ScriptJobs that have timed out during this session
+     */
+    public int getExpiredJobCount() {
+        return mJobRegistry.getExpiredCount();
+    }
+
+    /**
+     * Must be called while holding the lock on mQueuedJobs
+     */
+    private void scheduleFlushQueuedJobs() {
+        if (!mQueuedJobsFlushScheduled && !mQueuedJobs.isEmpty()
+                && mJobRegistry.getPendingCount() < MAX_IN_FLIGHT_JOBS) {
+            mQueuedJobsFlushScheduled = true;
+            mHandler.post(mFlushQueuedJobsRunnable);
+        }
+    }
+
+    private void flushQueuedJobs() {
+        JsonArray batch = new JsonArray();
+        synchronized (mQueuedJobs) {
+            int batchSize = Math.min(MAX_JOB_BATCH_SIZE,
+                    MAX_IN_FLIGHT_JOBS - mJobRegistry.getPendingCount());
+            Iterator<Map.Entry<String, ScriptJob>> iterator = mQueuedJobs.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Map.Entry<String, ScriptJob> entry = iterator.next();
+                iterator.remove();
+                ScriptJob job = entry.getValue();
+                mJobRegistry.put(entry.getKey(), job);
+                JsonObject jobObject = new JsonObject();
+                jobObject.addProperty("requestId", entry.getKey());
+                jobObject.addProperty("objectId", job.getScriptObject().getId());
+                jobObject.addProperty("methodName", job.getMethodName());
+                jobObject.add("params", GsonHelper.get().toJsonTree(job.getArguments()));
+                batch.add(jobObject);
+            }
+            if (batch.size() == 0) {
+                mQueuedJobsFlushScheduled = false;
+                return;
+            }
+        }
+        scheduleExpireJobs();
+        evaluateJavaScriptNow("Tomahawk.PluginManager.invokeBatch("
+                + GsonHelper.get().toJson(batch) + ")", new ValueCallback<String>() {
             @Override
-            public void run() {
-                evaluateJavaScript("Tomahawk.PluginManager.invoke("
-                        + "'" + requestId + "',"
-                        + "'" + job.getScriptObject().getId() + "',"
-                        + "'" + job.getMethodName() + "',"
-                        + GsonHelper.get().toJson(job.getArguments()) + ")");
+            public void onReceiveValue(String value) {
+                // Don't flood the WebView, send the next batch once this one has been evaluated
+                synchronized (mQueuedJobs) {
+                    mQueuedJobsFlushScheduled = false;
+                    scheduleFlushQueuedJobs();
+                }
             }
         });
     }
 
+    /**
+     * Fails all in-flight ScriptJobs whose deadline has passed. Must be called on the main thread.
+     */
+    private void expireJobs() {
+        final List<ScriptJob> expiredJobs = mJobRegistry.removeExpired();
+        if (!expiredJobs.isEmpty()) {
+            Log.d(TAG, "expireJobs - ScriptAccount:" + mName + ", " + expiredJobs.size()
+                    + " ScriptJobs timed out (pending: " + mJobRegistry.getPendingCount()
+                    + ", expired: " + mJobRegistry.getExpiredCount() + ")");
+            ThreadManager.get().execute(
+                    new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_REPORTING) {
+                        @Override
+                        public void run() {
+                            for (ScriptJob job : expiredJobs) {
+                                job.reportTimeout();
+                            }
+                        }
+                    });
+            synchronized (mQueuedJobs) {
+                scheduleFlushQueuedJobs();
+            }
+        }
+        scheduleExpireJobs();
+    }
+
+    /**
+     * Makes sure that {@link #expireJobs()} runs at the earliest deadline of all in-flight
+     * ScriptJobs. Must be called on the main thread.
+     */
+    private void scheduleExpireJobs() {
+        long earliestDeadline = mJobRegistry.getEarliestDeadline();
+        if (earliestDeadline >= 0 && (mExpireJobsAt < 0 || earliestDeadline < mExpireJobsAt)) {
+            mHandler.removeCallbacks(mExpireJobsRunnable);
+            mHandler.postDelayed(mExpireJobsRunnable,
+                    Math.max(0, earliestDeadline - System.currentTimeMillis()));
+            mExpireJobsAt = earliestDeadline;
+        }
+    }
+
     private void evaluateJavaScript(final String code) {
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
+        mHandler.post(new Runnable() {
             @Override
             public void run() {
-                mWebView.loadUrl("javascript: " + code);
+                evaluateJavaScriptNow(code, null);
             }
         });
     }
 
+    /**
+     * Evaluates the given code in this ScriptAccount's WebView. Must be called on the main thread.
+     *
+     * @param callback an optional callback that is being called once the code has been evaluated.
+     *                 Below KitKat the callback is being called right away with a null value.
+     */
+    @SuppressLint("NewApi")
+    private void evaluateJavaScriptNow(String code, ValueCallback<String> callback) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            mWebView.evaluateJavascript(code, callback);
+        } else {
+            // We have to encode the %-chars because the WebView percent-decodes "javascript:" URLs
+            // before evaluating them
+            mWebView.loadUrl("javascript: " + code.replace("%", "%25"));
+            if (callback != null) {
+                callback.onReceiveValue(null);
+            }
+        }
+    }
+
+    /**
+     * Report the results of all ScriptJobs contained in the given array, which has been sent by
+     * Tomahawk.PluginManager.invokeBatch.
+     */
+    public void reportScriptJobResults(JsonArray results) {
+        for (JsonElement result : results) {
+            if (result.isJsonObject()) {
+                reportScriptJobResult((JsonObject) result);
+            }
+        }
+    }
+
     public void reportScriptJobResult(JsonObject result) {
         JsonElement requestIdNode = result.get("requestId");
         String requestId = null;
@@ -351,8 +583,11 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
             requestId = result.get("requestId").getAsString();
         }
         if (requestId != null && !requestId.isEmpty()) {
-            ScriptJob job = mJobs.get(requestId);
+            ScriptJob job = mJobRegistry.remove(requestId);
             if (job != null) {
+                synchronized (mQueuedJobs) {
+                    scheduleFlushQueuedJobs();
+                }
                 JsonElement errorNode = result.get("error");
                 if (errorNode == null) {
                     job.reportResults(result.get("data"));
@@ -362,8 +597,9 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
                     job.reportFailure("no error message provided");
                 }
             } else {
-                Log.e(TAG, "reportScriptJobResult - ScriptAccount:" + mName
-                        + ", couldn't find ScriptJob with given requestId");
+                Log.d(TAG, "reportScriptJobResult - ScriptAccount:" + mName
+                        + ", couldn't find ScriptJob with given requestId, it has probably expired"
+                        + " (late results: " + mJobRegistry.getLateResultCount() + ")");
             }
         } else {
             Log.e(TAG, "reportScriptJobResult - ScriptAccount:" + mName
@@ -429,20 +665,23 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
         }
     }
 
-    public void invokeNativeScriptJob(int requestId, String methodName, String paramsString) {
-        JsonObject params = GsonHelper.get().fromJson(paramsString, JsonObject.class);
+    public void invokeNativeScriptJob(final int requestId, String methodName,
+            final String paramsString) {
         if (methodName.equals("collectionAddTracks")) {
-            String id = params.get("id").getAsString();
-            List<ScriptResolverTrack> tracks = GsonHelper.get().fromJson(
-                    params.getAsJsonArray("tracks"),
-                    new TypeToken<List<ScriptResolverTrack>>() {
-                    }.getType());
-
-            CollectionDb collectionDb = CollectionDbManager.get().getCollectionDb(id);
-            collectionDb.addTracks(tracks);
-
-            reportNativeScriptJobResult(requestId, "'" + collectionDb.getRevision() + "'");
-        } else if (methodName.equals("collectionWipe")) {
+            // Collections can be huge, so we stream the tracks instead of parsing the whole JSON.
+            // This is done off the JavaBridge thread, so that the progress events can reach the
+            // WebView while the tracks are still being stored.
+            ThreadManager.get().execute(
+                    new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_DATABASEACTION) {
+                        @Override
+                        public void run() {
+                            collectionAddTracks(requestId, paramsString);
+                        }
+                    });
+            return;
+        }
+        JsonObject params = GsonHelper.get().fromJson(paramsString, JsonObject.class);
+        if (methodName.equals("collectionWipe")) {
             String id = params.get("id").getAsString();
 
             CollectionDbManager.get().getCollectionDb(id).wipe();
@@ -478,6 +717,132 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
         }
     }
 
+    private void collectionAddTracks(final int requestId, String paramsString) {
+        try {
+            // First pass: get the collection's id and find out which albums are compilations
+            CollectionDb.CompilationInfo info = new CollectionDb.CompilationInfo();
+            String id = readCollectionAddTracksParams(paramsString, info, null);
+            if (id == null) {
+                reportNativeScriptJobError(requestId, "No collection id provided");
+                return;
+            }
+            CollectionDb collectionDb = CollectionDbManager.get().getCollectionDb(id);
+
+            // Second pass: actually store the tracks, chunk by chunk
+            CollectionDb.TrackWriter writer = collectionDb.beginAddTracks(info,
+                    new CollectionDb.AddTracksProgressListener() {
+                        @Override
+                        public void onProgress(int addedCount, int totalCount) {
+                            evaluateJavaScript(
+                                    "Tomahawk.NativeScriptJobManager.reportNativeScriptJobProgress("
+                                            + requestId + ", { added: " + addedCount
+                                            + ", total: " + totalCount + " } );");
+                        }
+                    });
+            try {
+                readCollectionAddTracksParams(paramsString, null, writer);
+                writer.finish();
+            } finally {
+                // Keeps whatever has been committed so far, if reading the tracks has failed
+                writer.abort();
+            }
+
+            reportNativeScriptJobResult(requestId, "'" + collectionDb.getRevision() + "'");
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            Log.e(TAG, "collectionAddTracks: " + e.getClass() + ": " + e.getLocalizedMessage());
+            reportNativeScriptJobError(requestId, "Couldn't parse tracks");
+        } catch (RuntimeException e) {
+            // e.g. a SQLiteException, the JS promise has to be settled nevertheless
+            Log.e(TAG, "collectionAddTracks: " + e.getClass() + ": " + e.getLocalizedMessage());
+            reportNativeScriptJobError(requestId, "Couldn't store tracks");
+        }
+    }
+
+    /**
+     * Reads the params of a "collectionAddTracks" call one track at a time, so that neither the
+     * JSON tree nor the complete list of tracks has to be held in memory.
+     *
+     * @param info   the {@link CollectionDb.CompilationInfo} every track should be added to. Can
+     *               be null. If no writer is given, only the fields that the CompilationInfo
+     *               needs are being read.
+     * @param writer the {@link CollectionDb.TrackWriter} every track should be added to. Can be
+     *               null.
+     * @return the collection id contained in the given params
+     */
+    private static String readCollectionAddTracksParams(String paramsString,
+            CollectionDb.CompilationInfo info, CollectionDb.TrackWriter writer)
+            throws IOException {
+        String id = null;
+        JsonReader reader = new JsonReader(new StringReader(paramsString));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("id")) {
+                    id = reader.nextString();
+                } else if (name.equals("tracks")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (writer == null) {
+                            if (info != null) {
+                                readCompilationInfoFields(reader, info);
+                            } else {
+                                reader.skipValue();
+                            }
+                            continue;
+                        }
+                        ScriptResolverTrack track =
+                                GsonHelper.get().fromJson(reader, ScriptResolverTrack.class);
+                        if (info != null) {
+                            info.add(track);
+                        }
+                        writer.add(track);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+        return id;
+    }
+
+    /**
+     * Reads a single track object, but only the album, albumArtist and artist fields of it, and
+     * adds them to the given {@link CollectionDb.CompilationInfo}.
+     */
+    private static void readCompilationInfoFields(JsonReader reader,
+            CollectionDb.CompilationInfo info) throws IOException {
+        String album = null;
+        String albumArtist = null;
+        String artist = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("album")) {
+                album = reader.nextString();
+            } else if (name.equals("albumArtist")) {
+                albumArtist = reader.nextString();
+            } else if (name.equals("artist")) {
+                artist = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        info.add(album, albumArtist, artist);
+    }
+
+    private void reportNativeScriptJobError(int requestId, String error) {
+        evaluateJavaScript("Tomahawk.NativeScriptJobManager.reportNativeScriptJobError( "
+                + requestId + ", '" + StringUtils.escapeJavaScript(error) + "' );");
+    }
+
     private void reportNativeScriptJobResult(int requestId, String result) {
         if (result == null) {
             evaluateJavaScript("Tomahawk.NativeScriptJobManager.reportNativeScriptJobResult( "
@@ -518,9 +883,7 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
             java.net.CookieManager cookieManager = getCookieManager(isTestingConfig);
             response = NetworkUtils.httpRequest(method, url, headers, username, password, data,
                     true, cookieManager);
-            // We have to encode the %-chars because the Android WebView automatically decodes
-            // percentage-escaped chars ... for whatever reason. Seems likely that this is a bug.
-            String responseText = response.body().string().replace("%", "%25");
+            String responseText = response.body().string();
             JsonObject responseHeaders = new JsonObject();
             for (String headerName : response.headers().names()) {
                 String concatenatedValues = "";
@@ -530,12 +893,10 @@ public class ScriptAccount implements ScriptWebViewClient.WebViewClientReadyList
                     }
                     concatenatedValues += response.headers(headerName).get(i);
                 }
-                String escapedKey = headerName.toLowerCase().replace("%", "%25");
-                String escapedValue = concatenatedValues.replace("%", "%25");
-                responseHeaders.addProperty(escapedKey, escapedValue);
+                responseHeaders.addProperty(headerName.toLowerCase(), concatenatedValues);
             }
             int status = response.code();
-            String statusText = response.message().replace("%", "%25");
+            String statusText = response.message();
 
             JsonObject result = new JsonObject();
             result.addProperty("responseText", responseText);
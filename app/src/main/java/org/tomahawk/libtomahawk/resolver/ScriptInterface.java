@@ -1,5 +1,6 @@
 package org.tomahawk.libtomahawk.resolver;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -8,6 +9,8 @@ import org.apache.commons.io.FileUtils;
 import org.tomahawk.libtomahawk.resolver.models.ScriptResolverData;
 import org.tomahawk.libtomahawk.utils.GsonHelper;
 import org.tomahawk.tomahawk_android.TomahawkApp;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
 import android.util.Log;
 import android.webkit.JavascriptInterface;
@@ -141,12 +144,38 @@ public class ScriptInterface {
         return values;
     }
 
+    /**
+     * Parsing large results can take a while, so we do it on a background thread. Otherwise we'd
+     * block the JavaBridge thread and with it every other call from JS to Java.
+     */
     @JavascriptInterface
-    public void reportScriptJobResults(String resultsString) {
-        JsonElement node = GsonHelper.get().fromJson(resultsString, JsonElement.class);
-        if (node.isJsonObject()) {
-            mScriptAccount.reportScriptJobResult((JsonObject) node);
-        }
+    public void reportScriptJobResults(final String resultsString) {
+        ThreadManager.get().execute(
+                new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_REPORTING) {
+                    @Override
+                    public void run() {
+                        JsonElement node =
+                                GsonHelper.get().fromJson(resultsString, JsonElement.class);
+                        if (node.isJsonObject()) {
+                            mScriptAccount.reportScriptJobResult((JsonObject) node);
+                        }
+                    }
+                });
+    }
+
+    @JavascriptInterface
+    public void reportScriptJobResultsBatch(final String resultsString) {
+        ThreadManager.get().execute(
+                new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_REPORTING) {
+                    @Override
+                    public void run() {
+                        JsonElement node =
+                                GsonHelper.get().fromJson(resultsString, JsonElement.class);
+                        if (node.isJsonArray()) {
+                            mScriptAccount.reportScriptJobResults((JsonArray) node);
+                        }
+                    }
+                });
     }
 
     @JavascriptInterface
@@ -39,6 +39,12 @@ public class ScriptJob {
 
     public static final String TAG = ScriptJob.class.getSimpleName();
 
+    // The time in ms after which a ScriptJob fails, if it hasn't reported back until then
+    public static final long DEFAULT_TIMEOUT = 60 * 1000;
+
+    // Used for methods that might have to wait for the user, e.g. to log in through a WebView
+    public static final long INTERACTIVE_TIMEOUT = 10 * 60 * 1000;
+
     private ScriptObject mScriptObject;
 
     private String mMethodName;
@@ -49,6 +55,8 @@ public class ScriptJob {
 
     private FailureCallback mFailureCallback;
 
+    private long mTimeout;
+
     private interface SuccessCallback {
 
     }
@@ -212,6 +220,7 @@ public class ScriptJob {
         mScriptObject = object;
         mMethodName = methodName;
         mArguments = arguments;
+        mTimeout = "login".equals(methodName) ? INTERACTIVE_TIMEOUT : DEFAULT_TIMEOUT;
         mSuccessCallback = successCallback;
         if (failureCallback == null) {
             failureCallback = new FailureCallback() {
@@ -240,6 +249,10 @@ public class ScriptJob {
         return mArguments;
     }
 
+    public long getTimeout() {
+        return mTimeout;
+    }
+
     /**
      * This method is being called if the request was successful.
      *
@@ -273,4 +286,11 @@ public class ScriptJob {
         mFailureCallback.onReportFailure(errorMessage);
     }
 
+    /**
+     * This method is being called if the request hasn't reported back within its timeout.
+     */
+    public void reportTimeout() {
+        reportFailure("ScriptJob timed out after " + mTimeout + "ms");
+    }
+
 }
@@ -0,0 +1,130 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2016, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of all {@link ScriptJob}s of a {@link ScriptAccount} that have been sent to the JS
+ * side and haven't reported back yet. Every job is removed as soon as it has completed or its
+ * deadline has passed, so that neither the jobs nor their callbacks are being leaked.
+ *
+ * All methods can be called from any thread.
+ */
+class ScriptJobRegistry {
+
+    private static class Entry {
+
+        private final ScriptJob mJob;
+
+        private final long mDeadline;
+
+        private Entry(ScriptJob job, long deadline) {
+            mJob = job;
+            mDeadline = deadline;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    private final AtomicInteger mExpiredCount = new AtomicInteger();
+
+    private final AtomicInteger mLateResultCount = new AtomicInteger();
+
+    /**
+     * Register the given job. Its deadline is determined by {@link ScriptJob#getTimeout()}.
+     */
+    public void put(String requestId, ScriptJob job) {
+        mEntries.put(requestId, new Entry(job, System.currentTimeMillis() + job.getTimeout()));
+    }
+
+    /**
+     * Remove the job with the given requestId, because it has completed.
+     *
+     * @return the removed {@link ScriptJob} or null, if it has already expired or was never
+     * registered
+     */
+    public ScriptJob remove(String requestId) {
+        Entry entry = mEntries.remove(requestId);
+        if (entry == null) {
+            mLateResultCount.incrementAndGet();
+            return null;
+        }
+        return entry.mJob;
+    }
+
+    /**
+     * Remove all jobs whose deadline has passed.
+     *
+     * @return the removed jobs, which should be failed by the caller
+     */
+    public List<ScriptJob> removeExpired() {
+        List<ScriptJob> expiredJobs = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.mDeadline <= now) {
+                iterator.remove();
+                expiredJobs.add(entry.mJob);
+            }
+        }
+        mExpiredCount.addAndGet(expiredJobs.size());
+        return expiredJobs;
+    }
+
+    /**
+     * @return the earliest deadline of all registered jobs or -1 if there are none
+     */
+    public long getEarliestDeadline() {
+        long earliestDeadline = -1;
+        for (Entry entry : mEntries.values()) {
+            if (earliestDeadline < 0 || entry.mDeadline < earliestDeadline) {
+                earliestDeadline = entry.mDeadline;
+            }
+        }
+        return earliestDeadline;
+    }
+
+    /**
+     * @return the number of jobs that have been sent and are still waiting for their results
+     */
+    public int getPendingCount() {
+        return mEntries.size();
+    }
+
+    /**
+     * @return the number of jobs that have expired since this registry has been created
+     */
+    public int getExpiredCount() {
+        return mExpiredCount.get();
+    }
+
+    /**
+     * @return the number of results that have been reported for jobs that weren't registered
+     * (anymore), e.g. because they had already expired
+     */
+    public int getLateResultCount() {
+        return mLateResultCount.get();
+    }
+}
@@ -35,7 +35,6 @@ import org.tomahawk.libtomahawk.resolver.models.ScriptResolverUrlResult;
 import org.tomahawk.libtomahawk.utils.ADeferredObject;
 import org.tomahawk.libtomahawk.utils.GsonHelper;
 import org.tomahawk.libtomahawk.utils.NetworkUtils;
-import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.utils.WeakReferenceHandler;
 
 import android.os.Looper;
@@ -122,13 +121,7 @@ public class ScriptResolver implements Resolver, ScriptPlugin {
         mInitialized = false;
         mStopped = true;
         mId = mScriptAccount.getName();
-        if (getConfig().get(ScriptAccount.ENABLED_KEY) != null) {
-            mEnabled = (Boolean) getConfig().get(ScriptAccount.ENABLED_KEY);
-        } else {
-            // Enable soundcloud and jamendo by default
-            mEnabled = TomahawkApp.PLUGINNAME_JAMENDO.equals(mId)
-                    || TomahawkApp.PLUGINNAME_SOUNDCLOUD.equals(mId);
-        }
+        mEnabled = mScriptAccount.isResolverEnabled();
         settings();
         if (mEnabled) {
             init();
@@ -32,6 +32,12 @@ public class ScriptWebViewClient extends WebViewClient {
          * the given .js script.
          */
         void onWebViewClientReady();
+
+        /**
+         * This method is being called, when the {@link ScriptWebViewClient} couldn't load the
+         * given .js script.
+         */
+        void onWebViewClientError(String description);
     }
 
     private final WebViewClientReadyListener mReadyListener;
@@ -43,4 +49,10 @@ public class ScriptWebViewClient extends WebViewClient {
     public void onPageFinished(WebView view, String url) {
         mReadyListener.onWebViewClientReady();
     }
+
+    @Override
+    public void onReceivedError(WebView view, int errorCode, String description,
+            String failingUrl) {
+        mReadyListener.onWebViewClientError(description);
+    }
 }
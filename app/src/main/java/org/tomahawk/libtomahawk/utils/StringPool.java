@@ -0,0 +1,89 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2016, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A process-wide, bounded pool used to deduplicate entity names (artist names, album names, ...).
+ * Large collections repeat the same few thousand names over and over again, so handing out one
+ * shared instance per name saves a lot of memory.
+ *
+ * The pool is a lock-free open-addressed table of {@link WeakReference}s. Entries that aren't
+ * referenced anywhere else get cleared by the GC and their slots are reused. If all probed slots
+ * are taken, the oldest-probed slot is simply overwritten, so the pool never grows beyond its
+ * fixed size. This also means that two equal Strings aren't guaranteed to be the same instance, so
+ * callers must never compare pooled Strings by identity.
+ */
+public class StringPool {
+
+    // Must be a power of two
+    private static final int CAPACITY = 16384;
+
+    private static final int MAX_PROBES = 8;
+
+    private static final AtomicReferenceArray<WeakReference<String>> sTable =
+            new AtomicReferenceArray<>(CAPACITY);
+
+    /**
+     * @return a pooled String that is equal to the given String. If none is pooled yet, the given
+     * String is added to the pool and returned.
+     */
+    public static String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        if (s.isEmpty()) {
+            return "";
+        }
+        int hash = spread(s.hashCode());
+        int freeSlot = -1;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int slot = (hash + i) & (CAPACITY - 1);
+            WeakReference<String> ref = sTable.get(slot);
+            String pooled = ref != null ? ref.get() : null;
+            if (pooled == null) {
+                if (freeSlot < 0) {
+                    freeSlot = slot;
+                }
+            } else if (pooled.equals(s)) {
+                return pooled;
+            }
+        }
+        if (freeSlot < 0) {
+            // All probed slots are in use, so we evict the first one
+            freeSlot = hash & (CAPACITY - 1);
+        }
+        // Racing writers may overwrite each other here, which only costs us a missed dedup
+        sTable.set(freeSlot, new WeakReference<>(s));
+        return s;
+    }
+
+    /**
+     * Same as {@link #intern(String)}, but returns an empty String instead of null.
+     */
+    public static String internNonNull(String s) {
+        return s != null ? intern(s) : "";
+    }
+
+    private static int spread(int hash) {
+        // Mix the high bits into the low bits, since we only use the latter to pick a slot
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -26,6 +26,7 @@ import org.tomahawk.libtomahawk.database.DatabaseHelper;
 import org.tomahawk.libtomahawk.infosystem.stations.ScriptPlaylistGenerator;
 import org.tomahawk.libtomahawk.infosystem.stations.ScriptPlaylistGeneratorManager;
 import org.tomahawk.libtomahawk.infosystem.stations.ScriptPlaylistGeneratorSearchResult;
+import org.tomahawk.libtomahawk.resolver.PipeLine;
 import org.tomahawk.libtomahawk.utils.ViewUtils;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
@@ -105,6 +106,9 @@ public class CreateStationDialog extends ConfigDialog {
     @NonNull
     @Override
     public Dialog onCreateDialog(Bundle savedInstanceState) {
+        // The playlist generator's plugin might not have been started yet
+        PipeLine.get().startAllScriptAccounts();
+
         View layout = addViewToFrame(R.layout.config_create_station);
         mListView =
                 (StickyListHeadersListView) layout.findViewById(R.id.create_station_listview);
@@ -24,6 +24,7 @@ import org.jdeferred.multiple.MultipleResults;
 import org.tomahawk.libtomahawk.infosystem.charts.ScriptChartsCountryCodes;
 import org.tomahawk.libtomahawk.infosystem.charts.ScriptChartsManager;
 import org.tomahawk.libtomahawk.infosystem.charts.ScriptChartsProvider;
+import org.tomahawk.libtomahawk.resolver.PipeLine;
 import org.tomahawk.libtomahawk.resolver.models.ScriptResolverMetaData;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.TomahawkApp;
@@ -89,6 +90,9 @@ public class ChartsSelectorFragment extends Fragment {
 
         getActivity().setTitle(R.string.drawer_title_charts);
 
+        // Charts providers of disabled resolvers are only being registered once their plugin has
+        // been started
+        PipeLine.get().startAllScriptAccounts();
         setupView();
     }
 
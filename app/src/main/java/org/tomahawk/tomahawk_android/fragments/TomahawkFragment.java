@@ -686,6 +686,15 @@ public abstract class TomahawkFragment extends TomahawkListFragment
                         public void run() {
                             if (mResolvingItems.add(playlist)) {
                                 Playlist pl = playlist;
+                                // The top artists are being maintained by the DatabaseHelper, so
+                                // we only have to calculate them ourselves if none are stored
+                                String[] topArtistNames = pl.getTopArtistNames();
+                                if (topArtistNames != null && topArtistNames.length > 0) {
+                                    for (int i = 0; i < topArtistNames.length && i < 5; i++) {
+                                        resolveItem(Artist.get(topArtistNames[i]));
+                                    }
+                                    return;
+                                }
                                 if (pl.size() == 0) {
                                     pl = DatabaseHelper.get().getPlaylist(pl.getId());
                                 }
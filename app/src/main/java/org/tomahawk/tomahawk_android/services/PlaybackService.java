@@ -918,6 +918,7 @@ public class PlaybackService extends MediaBrowserServiceCompat {
         mPlayState = PlaybackStateCompat.STATE_PAUSED;
         handlePlayState();
         mNotification.stopNotification();
+        InfoSystem.get().flushPlaybackLog();
 
         releaseAllPlayers();
         if (mWakeLock.isHeld()) {
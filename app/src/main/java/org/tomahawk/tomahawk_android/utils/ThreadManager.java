@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -43,6 +44,9 @@ public class ThreadManager {
     // Sets the Time Unit to seconds
     private static final TimeUnit KEEP_ALIVE_TIME_UNIT = TimeUnit.SECONDS;
 
+    // Sets the maximum number of threads that concurrently read from the collection databases
+    private static final int DB_READ_THREADS = Math.min(2, NUMBER_OF_CORES);
+
     private static class Holder {
 
         private static final ThreadManager instance = new ThreadManager();
@@ -51,6 +55,8 @@ public class ThreadManager {
 
     private final ThreadPoolExecutor mThreadPool;
 
+    private final ThreadPoolExecutor mDbReadThreadPool;
+
     private final ConcurrentHashMap<TomahawkMediaPlayer, ThreadPoolExecutor> mPlaybackThreadPools
             = new ConcurrentHashMap<>();
 
@@ -60,6 +66,27 @@ public class ThreadManager {
         mQueryRunnableMap = new ConcurrentHashMap<>();
         mThreadPool = new ThreadPoolExecutor(NUMBER_OF_CORES, NUMBER_OF_CORES,
                 KEEP_ALIVE_TIME, KEEP_ALIVE_TIME_UNIT, new PriorityBlockingQueue<Runnable>());
+        mDbReadThreadPool = new ThreadPoolExecutor(DB_READ_THREADS, DB_READ_THREADS,
+                KEEP_ALIVE_TIME, KEEP_ALIVE_TIME_UNIT, new LifoBlockingDeque<Runnable>());
+        mDbReadThreadPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * A deque that hands out the most recently added element first. When the user navigates
+     * quickly, the database reads of the screen that is currently being shown are served before
+     * the ones of the screens that have already been left.
+     */
+    private static class LifoBlockingDeque<E> extends LinkedBlockingDeque<E> {
+
+        @Override
+        public boolean offer(E e) {
+            return offerFirst(e);
+        }
+
+        @Override
+        public boolean add(E e) {
+            return offer(e);
+        }
     }
 
     public static ThreadManager get() {
@@ -70,6 +97,14 @@ public class ThreadManager {
         mThreadPool.execute(r);
     }
 
+    /**
+     * Executes the given Runnable on the bounded pool of threads that is reserved for reading from
+     * the collection databases.
+     */
+    public void executeDbRead(Runnable r) {
+        mDbReadThreadPool.execute(r);
+    }
+
     public void execute(TomahawkRunnable r, Query query) {
         Collection<TomahawkRunnable> runnables = mQueryRunnableMap.get(query);
         if (runnables == null) {
@@ -108,6 +143,9 @@ public class ThreadManager {
                 return true;
             }
         }
+        if (mDbReadThreadPool.getActiveCount() > 0 || mDbReadThreadPool.getQueue().size() > 0) {
+            return true;
+        }
         return mThreadPool.getActiveCount() > 0 || mThreadPool.getQueue().size() > 0;
     }
 }